@@ -3,10 +3,17 @@ package ru.yandex.practicum.filmorate.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmBatchResult;
+import ru.yandex.practicum.filmorate.service.FilmBatchService;
 import ru.yandex.practicum.filmorate.service.FilmDbService;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
 
@@ -21,6 +28,9 @@ import java.util.List;
 public class FilmController {
 
     private final FilmDbService filmDbService;
+    private final FilmBatchService filmBatchService;
+    private final NdjsonWriter ndjsonWriter;
+    private final JsonArrayReader jsonArrayReader;
 
     /**
      * addLike - добавляет лайк фильму с указанным id от пользователя с указанным userId.
@@ -56,6 +66,19 @@ public class FilmController {
         return filmDbService.addFilm(film);
     }
 
+    /**
+     * addFilms - добавляет фильмы из JSON-массива в теле запроса. Массив читается по одному фильму,
+     * а фильмы записываются в базу данных пакетами. Некорректные фильмы пропускаются.
+     *
+     * @param body тело запроса с массивом фильмов
+     * @return идентификаторы добавленных фильмов и ошибки пропущенных с их номерами в массиве
+     * @throws IOException если тело запроса не удалось прочитать
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public FilmBatchResult addFilms(InputStream body) throws IOException {
+        return filmBatchService.addFilms(jsonArrayReader.read(body, Film.class));
+    }
+
     /**
      * getPopular - возвращает список из count самых популярных фильмов.
      *
@@ -73,12 +96,30 @@ public class FilmController {
 
     /**
      * getAll - возвращает коллекцию всех фильмов в хранилище.
+     * Если указан хотя бы один из параметров after или limit, возвращается одна страница фильмов,
+     * упорядоченных по идентификатору.
      *
-     * @return коллекция всех фильмов в хранилище
+     * @param after идентификатор последнего фильма предыдущей страницы
+     * @param limit размер страницы
+     * @return коллекция всех фильмов в хранилище или страница фильмов
      */
     @GetMapping
-    public Collection<Film> getAll() {
-        return filmDbService.getAll();
+    public Collection<Film> getAll(@RequestParam(required = false) Long after,
+                                   @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            return filmDbService.getAll();
+        }
+        return filmDbService.getPage(after, limit);
+    }
+
+    /**
+     * streamAll - передает все фильмы в формате NDJSON по мере их чтения из базы данных.
+     *
+     * @return потоковый ответ в формате NDJSON
+     */
+    @GetMapping(value = "/stream", produces = NdjsonWriter.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        return ndjsonWriter.write(filmDbService::forEachFilm);
     }
 
     /**
@@ -0,0 +1,128 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+/**
+ * JsonArrayReader - читает JSON-массив из тела запроса по одному элементу, не загружая весь массив в память.
+ * <p>
+ * Каждый элемент преобразуется в объект и проверяется аннотациями валидации. Если элемент некорректен,
+ * {@link Iterator#next()} выбрасывает {@link ValidationException}, а чтение можно продолжить со следующего
+ * элемента. После синтаксической ошибки JSON чтение прекращается.
+ * </p>
+ */
+@Component
+@RequiredArgsConstructor
+public class JsonArrayReader {
+
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    /**
+     * read - начинает чтение JSON-массива.
+     *
+     * @param in   тело запроса
+     * @param type тип элементов массива
+     * @param <T>  тип элементов массива
+     * @return итератор по элементам массива
+     * @throws IOException         если тело запроса не удалось прочитать
+     * @throws ValidationException если тело запроса не является JSON-массивом
+     */
+    public <T> Iterator<T> read(InputStream in, Class<T> type) throws IOException {
+        JsonParser parser = objectMapper.createParser(in);
+        try {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new ValidationException("Ожидается массив JSON");
+            }
+        } catch (JsonProcessingException e) {
+            throw new ValidationException("Ожидается массив JSON");
+        }
+        return new ElementIterator<>(parser, type);
+    }
+
+    private static String messageOf(IOException e) {
+        return e instanceof JsonProcessingException jsonException ? jsonException.getOriginalMessage() : e.getMessage();
+    }
+
+    private final class ElementIterator<T> implements Iterator<T> {
+
+        private final JsonParser parser;
+        private final Class<T> type;
+        private JsonToken token;
+        private String syntaxError;
+        private boolean finished;
+
+        private ElementIterator(JsonParser parser, Class<T> type) {
+            this.parser = parser;
+            this.type = type;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (finished) {
+                return false;
+            }
+            if (token == null && syntaxError == null) {
+                try {
+                    token = parser.nextToken();
+                    if (token == null) {
+                        syntaxError = "массив не завершен";
+                    }
+                } catch (IOException e) {
+                    syntaxError = messageOf(e);
+                }
+            }
+            if (token == JsonToken.END_ARRAY) {
+                finished = true;
+            }
+            return !finished;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            JsonNode node;
+            try {
+                if (syntaxError != null) {
+                    throw new IOException(syntaxError);
+                }
+                node = parser.readValueAsTree();
+            } catch (IOException e) {
+                finished = true;
+                throw new ValidationException("Некорректный JSON: " + messageOf(e));
+            } finally {
+                token = null;
+            }
+            T item;
+            try {
+                item = objectMapper.treeToValue(node, type);
+            } catch (JsonProcessingException e) {
+                throw new ValidationException("Некорректный элемент: " + messageOf(e));
+            }
+            String violations = validator.validate(item).stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+            if (!violations.isEmpty()) {
+                throw new ValidationException(violations);
+            }
+            return item;
+        }
+    }
+}
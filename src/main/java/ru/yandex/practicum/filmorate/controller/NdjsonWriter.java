@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * NdjsonWriter - формирует потоковые ответы в формате NDJSON (один JSON-объект на строку).
+ * Объекты записываются в ответ по мере их получения от источника, без накопления всей коллекции в памяти.
+ */
+@Component
+@RequiredArgsConstructor
+public class NdjsonWriter {
+
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(APPLICATION_NDJSON_VALUE);
+    private static final byte LINE_SEPARATOR = '\n';
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * write - создает ответ, тело которого передает каждый объект источника в выходной поток отдельной строкой.
+     * Тип содержимого задается явно: для {@link StreamingResponseBody} он не выводится из атрибута produces.
+     *
+     * @param source источник, который передает объекты в полученный обработчик
+     * @param <T>    тип записываемых объектов
+     * @return потоковый ответ с типом содержимого application/x-ndjson
+     */
+    public <T> ResponseEntity<StreamingResponseBody> write(Consumer<Consumer<T>> source) {
+        StreamingResponseBody body = out -> {
+            try {
+                source.accept(item -> writeLine(out, item));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(APPLICATION_NDJSON).body(body);
+    }
+
+    private void writeLine(OutputStream out, Object item) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(item));
+            out.write(LINE_SEPARATOR);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
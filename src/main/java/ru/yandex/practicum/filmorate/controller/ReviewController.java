@@ -2,8 +2,12 @@ package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.ReviewCursor;
+import ru.yandex.practicum.filmorate.service.FieldsValidatorService;
 import ru.yandex.practicum.filmorate.service.ReviewService;
 
 import java.util.List;
@@ -18,7 +22,10 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ReviewController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final ReviewService reviewService;
+    private final NdjsonWriter ndjsonWriter;
 
     /**
      * Возвращает отзыв по его идентификатору.
@@ -35,15 +42,41 @@ public class ReviewController {
      * Возвращает список отзывов для определенного фильма.
      * Если идентификатор фильма не указан, возвращаются все отзывы.
      * Если указано количество отзывов, возвращается указанное количество самых полезных отзывов.
+     * Если указан курсор или размер страницы, возвращается страница отзывов в порядке полезности,
+     * а курсор следующей страницы передается в заголовке {@value #NEXT_CURSOR_HEADER}.
      *
      * @param filmId идентификатор фильма (необязательный)
      * @param count  количество отзывов, которые необходимо вернуть (необязательный)
+     * @param cursor курсор, полученный вместе с предыдущей страницей (необязательный)
+     * @param limit  размер страницы (необязательный)
      * @return список отзывов
      */
     @GetMapping
-    public List<Review> getReviewsForFilm(@RequestParam(required = false) Long filmId,
-                                          @RequestParam(required = false) Integer count) {
-        return reviewService.getReviewsForFilm(filmId, count);
+    public ResponseEntity<List<Review>> getReviewsForFilm(@RequestParam(required = false) Long filmId,
+                                                          @RequestParam(required = false) Integer count,
+                                                          @RequestParam(required = false) String cursor,
+                                                          @RequestParam(required = false) Integer limit) {
+        if (cursor == null && limit == null) {
+            return ResponseEntity.ok(reviewService.getReviewsForFilm(filmId, count));
+        }
+        List<Review> page = reviewService.getReviewsPage(filmId, cursor, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        int pageSize = limit == null ? FieldsValidatorService.DEFAULT_PAGE_SIZE : limit;
+        if (page.size() == pageSize) {
+            response.header(NEXT_CURSOR_HEADER, ReviewCursor.of(page.getLast()).encode());
+        }
+        return response.body(page);
+    }
+
+    /**
+     * Передает отзывы в порядке полезности в формате NDJSON, читая их страницами.
+     *
+     * @param filmId идентификатор фильма (необязательный)
+     * @return потоковый ответ в формате NDJSON
+     */
+    @GetMapping(value = "/stream", produces = NdjsonWriter.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamReviews(@RequestParam(required = false) Long filmId) {
+        return ndjsonWriter.<Review>write(action -> reviewService.forEachReview(filmId, action));
     }
 
     /**
@@ -0,0 +1,329 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.service.FeedService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SseFeedBroadcaster - передает новые события ленты подключенным клиентам в формате server-sent events.
+ * <p>
+ * События поступают от {@link FeedService} сразу после записи в базу данных и раскладываются по очередям
+ * подключений пользователя-автора. Отправка выполняется общим пулом из {@code filmorate.feed-stream.sender-threads}
+ * потоков, поэтому поток записи событий не блокируется медленными клиентами, а подключение занимает
+ * в памяти только эмиттер и очередь неотправленных событий.
+ * </p>
+ * <p>
+ * Очередь подключения ограничена {@code filmorate.feed-stream.queue-capacity} событиями. Если клиент
+ * не успевает их принимать, подключение закрывается; клиент переподключается с заголовком Last-Event-ID
+ * и получает пропущенные события из базы данных, после чего продолжает получать новые. Пропущенные события
+ * читаются страницами по {@value #REPLAY_PAGE_SIZE}; после каждой страницы поток отправки переходит
+ * к другим подключениям.
+ * </p>
+ * <p>
+ * Запись в подключение блокирует поток отправки, пока клиент не примет данные. Если отправка события
+ * длится дольше {@code filmorate.feed-stream.send-timeout-ms}, подключение закрывается, а в пул отправки
+ * добавляется поток на место занятого, чтобы остальные подключения продолжали получать события.
+ * Занятый поток освобождается, когда запись завершится или истечет время ожидания записи сервера,
+ * после чего пул возвращается к прежнему размеру.
+ * </p>
+ */
+@Slf4j
+@Component
+public class SseFeedBroadcaster {
+
+    private static final String EVENT_NAME = "event";
+    private static final String CONNECTED_COMMENT = "connected";
+    private static final int REPLAY_PAGE_SIZE = 100;
+
+    private final FeedService feedService;
+    private final long timeoutMs;
+    private final int queueCapacity;
+    private final long sendTimeoutNanos;
+    private final ThreadPoolExecutor sender;
+    private final ScheduledExecutorService watchdog;
+    private final ConcurrentMap<Long, Set<Connection>> connectionsByUser = new ConcurrentHashMap<>();
+
+    public SseFeedBroadcaster(FeedService feedService,
+                              @Value("${filmorate.feed-stream.timeout-ms:1800000}") long timeoutMs,
+                              @Value("${filmorate.feed-stream.queue-capacity:256}") int queueCapacity,
+                              @Value("${filmorate.feed-stream.sender-threads:2}") int senderThreads,
+                              @Value("${filmorate.feed-stream.send-timeout-ms:5000}") long sendTimeoutMs) {
+        this.feedService = feedService;
+        this.timeoutMs = timeoutMs;
+        this.queueCapacity = queueCapacity;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.sender = new ThreadPoolExecutor(senderThreads, senderThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "feed-stream-sender-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "feed-stream-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Подписывает broadcaster на записанные события и запускает проверку длительности отправки.
+     */
+    @PostConstruct
+    public void init() {
+        feedService.addFeedListener(this::publish);
+        long period = Math.max(1, sendTimeoutNanos / 2);
+        watchdog.scheduleWithFixedDelay(this::checkSendDeadlines, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * subscribe - открывает поток событий пользователя.
+     * Если передан идентификатор последнего полученного события, сначала отправляются все следующие
+     * за ним события из базы данных, иначе - только новые события.
+     *
+     * @param userId      Идентификатор пользователя.
+     * @param lastEventId Идентификатор последнего события, полученного клиентом.
+     * @return Эмиттер server-sent events.
+     */
+    public SseEmitter subscribe(long userId, Long lastEventId) {
+        feedService.checkUser(userId);
+        SseEmitter emitter = createEmitter(timeoutMs);
+        try {
+            // Без первой отправки заголовки ответа не передаются клиенту до первого события.
+            emitter.send(SseEmitter.event().comment(CONNECTED_COMMENT));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Connection connection = new Connection(userId, emitter, lastEventId);
+        connectionsByUser.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(connection);
+        emitter.onCompletion(connection::close);
+        emitter.onTimeout(connection::close);
+        emitter.onError(error -> connection.close());
+        connection.schedule();
+        return emitter;
+    }
+
+    /**
+     * Возвращает количество открытых подключений.
+     *
+     * @return Количество подключений.
+     */
+    public int getConnectionCount() {
+        return connectionsByUser.values().stream().mapToInt(Set::size).sum();
+    }
+
+    /**
+     * Закрывает все подключения и останавливает отправку.
+     */
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+        sender.shutdownNow();
+        connectionsByUser.values().forEach(connections ->
+                connections.forEach(connection -> connection.emitter.complete()));
+        connectionsByUser.clear();
+    }
+
+    /**
+     * Создает эмиттер подключения.
+     *
+     * @param timeout Время жизни подключения в миллисекундах.
+     * @return Эмиттер server-sent events.
+     */
+    protected SseEmitter createEmitter(long timeout) {
+        return new SseEmitter(timeout);
+    }
+
+    private void publish(List<Event> events) {
+        for (Event event : events) {
+            Set<Connection> connections = connectionsByUser.get(event.getUserId());
+            if (connections != null) {
+                connections.forEach(connection -> connection.offer(event));
+            }
+        }
+    }
+
+    private void checkSendDeadlines() {
+        long now = System.nanoTime();
+        connectionsByUser.values().forEach(connections -> connections.forEach(connection -> {
+            if (connection.stall(now)) {
+                log.info("Поток событий пользователя с id {} закрыт: отправка события длится дольше {} мс",
+                        connection.userId, TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+                resizeSender(1);
+            }
+        }));
+    }
+
+    private synchronized void resizeSender(int delta) {
+        if (delta > 0) {
+            sender.setMaximumPoolSize(sender.getMaximumPoolSize() + delta);
+            sender.setCorePoolSize(sender.getCorePoolSize() + delta);
+        } else {
+            sender.setCorePoolSize(sender.getCorePoolSize() + delta);
+            sender.setMaximumPoolSize(sender.getMaximumPoolSize() + delta);
+        }
+    }
+
+    /**
+     * Подключение клиента с ограниченной очередью неотправленных событий.
+     */
+    private final class Connection {
+
+        private final long userId;
+        private final SseEmitter emitter;
+        private final Queue<Event> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private boolean replaying;
+        private long replayAfter;
+        private long lastSentId;
+        private long sendStartedNanos;
+        private boolean sending;
+        private boolean stalled;
+
+        private Connection(long userId, SseEmitter emitter, Long lastEventId) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.replaying = lastEventId != null;
+            this.replayAfter = lastEventId == null ? 0 : lastEventId;
+        }
+
+        void offer(Event event) {
+            if (closed.get()) {
+                return;
+            }
+            if (queued.incrementAndGet() > queueCapacity) {
+                log.info("Поток событий пользователя с id {} закрыт: клиент не успевает принимать события", userId);
+                close();
+                emitter.complete();
+                return;
+            }
+            queue.add(event);
+            schedule();
+        }
+
+        void schedule() {
+            if (!closed.get() && scheduled.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                connectionsByUser.computeIfPresent(userId, (id, connections) -> {
+                    connections.remove(this);
+                    return connections.isEmpty() ? null : connections;
+                });
+                queue.clear();
+            }
+        }
+
+        /**
+         * Отмечает подключение как зависшее, если текущая отправка длится дольше допустимого.
+         *
+         * @param now Текущее время в наносекундах.
+         * @return true, если подключение отмечено зависшим этим вызовом.
+         */
+        synchronized boolean stall(long now) {
+            if (!sending || stalled || now - sendStartedNanos < sendTimeoutNanos) {
+                return false;
+            }
+            stalled = true;
+            close();
+            return true;
+        }
+
+        private void drain() {
+            try {
+                if (replaying) {
+                    replayPage();
+                }
+                Event event;
+                while (!replaying && !closed.get() && (event = queue.poll()) != null) {
+                    queued.decrementAndGet();
+                    send(event);
+                }
+            } catch (UncheckedIOException | IllegalStateException e) {
+                log.debug("Поток событий пользователя с id {} прерван: {}", userId, e.getMessage());
+                close();
+                emitter.completeWithError(e);
+            } finally {
+                scheduled.set(false);
+            }
+            if (replaying || !queue.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private void replayPage() {
+            List<Event> page = feedService.getFeedAfter(userId, replayAfter, REPLAY_PAGE_SIZE);
+            for (Event event : page) {
+                if (closed.get()) {
+                    return;
+                }
+                send(event);
+            }
+            if (page.size() < REPLAY_PAGE_SIZE) {
+                replaying = false;
+            } else {
+                replayAfter = page.getLast().getEventId();
+            }
+        }
+
+        private void send(Event event) {
+            if (event.getEventId() <= lastSentId) {
+                return;
+            }
+            synchronized (this) {
+                sending = true;
+                sendStartedNanos = System.nanoTime();
+            }
+            try {
+                emitter.send(SseEmitter.event()
+                        .id(String.valueOf(event.getEventId()))
+                        .name(EVENT_NAME)
+                        .data(event, MediaType.APPLICATION_JSON));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                finishSend();
+            }
+            lastSentId = event.getEventId();
+        }
+
+        private void finishSend() {
+            boolean wasStalled;
+            synchronized (this) {
+                sending = false;
+                wasStalled = stalled;
+            }
+            if (wasStalled) {
+                resizeSender(-1);
+                throw new IllegalStateException("Отправка события превысила допустимое время");
+            }
+        }
+    }
+}
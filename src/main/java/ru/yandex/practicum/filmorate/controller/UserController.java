@@ -3,7 +3,11 @@ package ru.yandex.practicum.filmorate.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Event;
 import ru.yandex.practicum.filmorate.model.Film;
@@ -29,15 +33,35 @@ public class UserController {
     private final UserDbService userDbService;
     private final FeedService feedService;
     private final FilmDbService filmDbService;
+    private final NdjsonWriter ndjsonWriter;
+    private final SseFeedBroadcaster sseFeedBroadcaster;
 
     /**
      * getAll - получает список всех пользователей.
+     * Если указан хотя бы один из параметров after или limit, возвращается одна страница пользователей,
+     * упорядоченных по идентификатору.
      *
-     * @return Коллекция всех пользователей.
+     * @param after Идентификатор последнего пользователя предыдущей страницы.
+     * @param limit Размер страницы.
+     * @return Коллекция всех пользователей или страница пользователей.
      */
     @GetMapping
-    public Collection<User> getAll() {
-        return userDbService.getAll();
+    public Collection<User> getAll(@RequestParam(required = false) Long after,
+                                   @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            return userDbService.getAll();
+        }
+        return userDbService.getPage(after, limit);
+    }
+
+    /**
+     * streamAll - передает всех пользователей в формате NDJSON по мере их чтения из базы данных.
+     *
+     * @return Потоковый ответ в формате NDJSON.
+     */
+    @GetMapping(value = "/stream", produces = NdjsonWriter.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        return ndjsonWriter.write(userDbService::forEachUser);
     }
 
 
@@ -129,13 +153,67 @@ public class UserController {
 
     /**
      * getFeed - получает список действий пользователя.
+     * Если указан хотя бы один из параметров before или limit, возвращается одна страница последних действий
+     * с идентификатором меньше before.
      *
-     * @param id Идентификатор пользователя.
+     * @param id     Идентификатор пользователя.
+     * @param before Идентификатор события, до которого выбирается страница.
+     * @param limit  Размер страницы.
      * @return Список действия пользователя.
      */
     @GetMapping("/{id}/feed")
-    public List<Event> getFeed(@PathVariable("id") long id) {
-        return feedService.getFeed(id);
+    public List<Event> getFeed(@PathVariable("id") long id,
+                               @RequestParam(required = false) Long before,
+                               @RequestParam(required = false) Integer limit) {
+        if (before == null && limit == null) {
+            return feedService.getFeed(id);
+        }
+        return feedService.getFeedPage(id, before, limit);
+    }
+
+    /**
+     * getTimeline - получает страницу ленты действий друзей пользователя.
+     *
+     * @param id     Идентификатор пользователя.
+     * @param before Идентификатор события, до которого выбирается страница.
+     * @param limit  Размер страницы.
+     * @return Список действий друзей пользователя.
+     */
+    @GetMapping("/{id}/timeline")
+    public List<Event> getTimeline(@PathVariable("id") long id,
+                                   @RequestParam(required = false) Long before,
+                                   @RequestParam(required = false) Integer limit) {
+        return feedService.getTimeline(id, before, limit);
+    }
+
+    /**
+     * streamFeed - передает все действия пользователя в формате NDJSON по мере их чтения из базы данных.
+     * Этот обработчик выбирается и для запросов без заголовка Accept или с {@code Accept: *}{@code /*};
+     * поток server-sent events ({@link #subscribeFeed(long, Long)}) отдается только при явном
+     * {@code Accept: text/event-stream}, который передает браузерный EventSource.
+     *
+     * @param id Идентификатор пользователя.
+     * @return Потоковый ответ в формате NDJSON.
+     */
+    @GetMapping(value = "/{id}/feed/stream", produces = NdjsonWriter.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamFeed(@PathVariable("id") long id) {
+        return ndjsonWriter.write(feedService.streamFeed(id));
+    }
+
+    /**
+     * subscribeFeed - передает новые действия пользователя в формате server-sent events по мере их записи.
+     * Клиент, передавший заголовок Last-Event-ID, сначала получает пропущенные действия.
+     * Обработчик выбирается только для запросов с заголовком {@code Accept: text/event-stream},
+     * остальные запросы к этому адресу получают NDJSON ({@link #streamFeed(long)}).
+     *
+     * @param id          Идентификатор пользователя.
+     * @param lastEventId Идентификатор последнего полученного события.
+     * @return Эмиттер server-sent events.
+     */
+    @GetMapping(value = "/{id}/feed/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeFeed(@PathVariable("id") long id,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return sseFeedBroadcaster.subscribe(id, lastEventId);
     }
 
     /**
@@ -7,6 +7,7 @@ import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Director;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -26,6 +27,7 @@ public class DirectorDbStorage extends BaseRepository<Director> {
     //SQL запросы для работы с базой данных
     private static final String FIND_ALL_DIRECTORS = "SELECT * FROM DIRECTORS ORDER BY DIRECTOR_ID";
     private static final String FIND_DIRECTOR_BY_ID = "SELECT * FROM DIRECTORS WHERE DIRECTOR_ID = ?";
+    private static final String FIND_DIRECTORS_BY_IDS = "SELECT * FROM DIRECTORS WHERE DIRECTOR_ID = ANY(?)";
     private static final String INSERT_DIRECTOR_QUERY = "INSERT INTO DIRECTORS(DIRECTOR_NAME) VALUES (?)";
     private static final String UPDATE_DIRECTOR_QUERY = "UPDATE DIRECTORS SET DIRECTOR_NAME = ? WHERE DIRECTOR_ID = ?";
     private static final String DELETE_DIRECTOR_QUERY = "DELETE FROM DIRECTORS WHERE DIRECTOR_ID = ?";
@@ -85,6 +87,16 @@ public class DirectorDbStorage extends BaseRepository<Director> {
         return director;
     }
 
+    /**
+     * Находит режиссеров по списку идентификаторов одним SQL-запросом.
+     *
+     * @param ids Идентификаторы режиссеров.
+     * @return Найденные режиссеры; несуществующие идентификаторы пропускаются, порядок не гарантируется.
+     */
+    public List<Director> findByIds(Collection<Long> ids) {
+        return findMany(FIND_DIRECTORS_BY_IDS, (Object) ids.toArray(new Long[0]));
+    }
+
     /**
      * Обновляет информацию о существующем режиссере.
      * <p>
@@ -0,0 +1,352 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.storage.TimelineStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Журнал событий с отложенной пакетной записью в таблицу HISTORY_ACTIONS.
+ * <p>
+ * События добавляются в ограниченную неблокирующую очередь и не требуют обращения к базе данных
+ * в потоке запроса. Фоновый поток раз в {@code filmorate.event-journal.flush-interval-ms} миллисекунд,
+ * а также при накоплении {@code filmorate.event-journal.batch-size} событий, записывает очередь
+ * пакетами через {@link HistoryDbStorage#addEvents(List)}. Идентификатор событию присваивается
+ * при добавлении (продолжая наибольший идентификатор в базе на момент старта). Под блокировкой выполняются
+ * только присвоение идентификатора и добавление в очередь, поэтому события записываются и передаются
+ * слушателям строго в порядке возрастания идентификатора, а поток запроса не ждет рассылки событий.
+ * Рассылка в ленты друзей {@link TimelineStore} выполняется после записи пакета в потоке записи.
+ * </p>
+ * <p>
+ * Если очередь заполнена ({@code filmorate.event-journal.capacity}), добавляющий поток ждет освобождения
+ * места не дольше {@code filmorate.event-journal.append-timeout-ms} миллисекунд, после чего добавляет событие
+ * сверх лимита: к этому моменту изменение, породившее событие, уже записано в базу, поэтому ни терять событие,
+ * ни возвращать клиенту ошибку нельзя. Ошибки записи в поток запроса не передаются.
+ * Перед чтением ленты вызывается {@link #flush()}, чтобы пользователь видел свои последние действия;
+ * при остановке приложения оставшиеся события записываются. После записи каждого пакета
+ * записанные события передаются слушателям, добавленным через {@link #addListener(Consumer)}.
+ * </p>
+ * <p>
+ * Если пакет записать не удалось, он остается первым в очереди и записывается повторно с экспоненциально
+ * растущей паузой, начиная с {@code filmorate.event-journal.retry-backoff-ms} миллисекунд. После
+ * {@code filmorate.event-journal.retry-attempts} неудачных попыток пакет откладывается в список
+ * {@link #getParkedEvents()}, чтобы один некорректный пакет не останавливал запись остальных событий.
+ * </p>
+ */
+@Slf4j
+@Component
+public class EventJournal {
+
+    private final HistoryDbStorage historyDbStorage;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long appendTimeoutNanos;
+    private final int retryAttempts;
+    private final long retryBackoffNanos;
+    private final Queue<Event> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ReentrantLock capacityLock = new ReentrantLock();
+    private final Condition notFull = capacityLock.newCondition();
+    private final List<Event> pendingBatch;
+    private final Queue<Event> parked = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService flusher;
+    private final List<Consumer<List<Event>>> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong lastEventId;
+    private final AtomicLong flushedEvents = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong overflowedAppends = new AtomicLong();
+    private final AtomicLong lastFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private int failedAttempts;
+    private long retryAtNanos;
+
+    public EventJournal(HistoryDbStorage historyDbStorage,
+                        TimelineStore timelineStore,
+                        @Value("${filmorate.event-journal.capacity:10000}") int capacity,
+                        @Value("${filmorate.event-journal.batch-size:100}") int batchSize,
+                        @Value("${filmorate.event-journal.flush-interval-ms:50}") long flushIntervalMs,
+                        @Value("${filmorate.event-journal.append-timeout-ms:1000}") long appendTimeoutMs,
+                        @Value("${filmorate.event-journal.retry-attempts:5}") int retryAttempts,
+                        @Value("${filmorate.event-journal.retry-backoff-ms:1000}") long retryBackoffMs) {
+        this.historyDbStorage = historyDbStorage;
+        this.lastEventId = new AtomicLong(historyDbStorage.getMaxEventId());
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.appendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(appendTimeoutMs);
+        this.retryAttempts = retryAttempts;
+        this.retryBackoffNanos = TimeUnit.MILLISECONDS.toNanos(retryBackoffMs);
+        this.pendingBatch = new ArrayList<>(batchSize);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-journal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        listeners.add(events -> events.forEach(timelineStore::publish));
+    }
+
+    /**
+     * Запускает периодическую запись событий.
+     */
+    @PostConstruct
+    public void start() {
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Присваивает событию идентификатор и добавляет его в журнал.
+     * Если очередь заполнена, ждет ее освобождения не дольше {@code filmorate.event-journal.append-timeout-ms}
+     * миллисекунд, после чего добавляет событие сверх лимита. Ошибки записи в базу данных не пробрасываются.
+     *
+     * @param event Событие.
+     */
+    public void append(Event event) {
+        if (!awaitCapacity()) {
+            overflowedAppends.incrementAndGet();
+            log.warn("Очередь журнала событий заполнена, событие добавлено сверх лимита {}", capacity);
+        }
+        appendLock.lock();
+        try {
+            event.setEventId(lastEventId.incrementAndGet());
+            depth.incrementAndGet();
+            queue.add(event);
+        } finally {
+            appendLock.unlock();
+        }
+        if (depth.get() % batchSize == 0) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Добавляет слушателя, которому после записи каждого пакета передаются записанные события.
+     * Слушатель вызывается в потоке записи и не должен блокироваться.
+     *
+     * @param listener Слушатель записанных событий.
+     */
+    public void addListener(Consumer<List<Event>> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Записывает в базу данных все события, добавленные в журнал к моменту вызова.
+     * Если запись пакета не удалась, пакет сохраняется для повторной записи, а исключение пробрасывается.
+     * Пока не истекла пауза перед повторной записью, метод ничего не записывает.
+     */
+    public void flush() {
+        flush(false);
+    }
+
+    private void flush(boolean ignoreBackoff) {
+        flushLock.lock();
+        try {
+            long start = System.nanoTime();
+            if (!ignoreBackoff && !pendingBatch.isEmpty() && start - retryAtNanos < 0) {
+                return;
+            }
+            int flushed = 0;
+            while (true) {
+                Event event;
+                while (pendingBatch.size() < batchSize && (event = queue.poll()) != null) {
+                    pendingBatch.add(event);
+                }
+                if (pendingBatch.isEmpty()) {
+                    break;
+                }
+                flushed += write(pendingBatch);
+            }
+            if (flushed > 0) {
+                long elapsed = System.nanoTime() - start;
+                flushedEvents.addAndGet(flushed);
+                lastFlushNanos.set(elapsed);
+                maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+                log.debug("Записано событий: {} за {} мкс, в очереди: {}", flushed, elapsed / 1000, depth.get());
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает количество событий, ожидающих записи.
+     *
+     * @return Глубина очереди.
+     */
+    public int getQueueDepth() {
+        return depth.get();
+    }
+
+    /**
+     * Возвращает количество событий, записанных в базу данных.
+     *
+     * @return Число записанных событий.
+     */
+    public long getFlushedEvents() {
+        return flushedEvents.get();
+    }
+
+    /**
+     * Возвращает количество неудачных попыток записи пакета.
+     *
+     * @return Число неудачных попыток записи.
+     */
+    public long getFailedFlushes() {
+        return failedFlushes.get();
+    }
+
+    /**
+     * Возвращает количество событий, добавленных сверх лимита очереди после истечения ожидания.
+     *
+     * @return Число событий, добавленных сверх лимита.
+     */
+    public long getOverflowedAppends() {
+        return overflowedAppends.get();
+    }
+
+    /**
+     * Возвращает события из пакетов, отложенных после исчерпания попыток записи.
+     *
+     * @return Отложенные события в порядке возрастания идентификатора.
+     */
+    public List<Event> getParkedEvents() {
+        return List.copyOf(parked);
+    }
+
+    /**
+     * Возвращает длительность последней записи в миллисекундах.
+     *
+     * @return Длительность последней записи.
+     */
+    public double getLastFlushMillis() {
+        return lastFlushNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Возвращает наибольшую длительность записи в миллисекундах.
+     *
+     * @return Наибольшая длительность записи.
+     */
+    public double getMaxFlushMillis() {
+        return maxFlushNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Останавливает фоновую запись и записывает оставшиеся события.
+     */
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush(true);
+        } catch (RuntimeException e) {
+            log.error("Не удалось записать оставшиеся события при остановке журнала", e);
+        }
+        log.info("Журнал событий остановлен, всего записано событий: {}", flushedEvents.get());
+    }
+
+    private boolean awaitCapacity() {
+        if (depth.get() < capacity) {
+            return true;
+        }
+        flusher.execute(this::flushQuietly);
+        long deadline = System.nanoTime() + appendTimeoutNanos;
+        capacityLock.lock();
+        try {
+            while (depth.get() >= capacity) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                notFull.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            capacityLock.unlock();
+        }
+    }
+
+    private int write(List<Event> batch) {
+        int size = batch.size();
+        try {
+            historyDbStorage.addEvents(batch);
+        } catch (RuntimeException e) {
+            failedFlushes.incrementAndGet();
+            if (++failedAttempts >= retryAttempts) {
+                park(batch);
+            } else {
+                retryAtNanos = System.nanoTime() + (retryBackoffNanos << Math.min(failedAttempts - 1, 20));
+            }
+            throw e;
+        }
+        failedAttempts = 0;
+        List<Event> written = List.copyOf(batch);
+        release(batch);
+        notifyListeners(written);
+        return size;
+    }
+
+    private void park(List<Event> batch) {
+        log.error("Пакет из {} событий (id {} - {}) отложен после {} неудачных попыток записи", batch.size(),
+                batch.getFirst().getEventId(), batch.getLast().getEventId(), failedAttempts);
+        parked.addAll(batch);
+        failedAttempts = 0;
+        release(batch);
+    }
+
+    private void release(List<Event> batch) {
+        depth.addAndGet(-batch.size());
+        batch.clear();
+        capacityLock.lock();
+        try {
+            notFull.signalAll();
+        } finally {
+            capacityLock.unlock();
+        }
+    }
+
+    private void notifyListeners(List<Event> written) {
+        for (Consumer<List<Event>> listener : listeners) {
+            try {
+                listener.accept(written);
+            } catch (RuntimeException e) {
+                log.error("Ошибка при передаче записанных событий слушателю", e);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Не удалось записать события в историю, пакет будет записан повторно", e);
+        }
+    }
+}
@@ -2,20 +2,26 @@ package ru.yandex.practicum.filmorate.dal;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
-import ru.yandex.practicum.filmorate.dal.mappers.DirectorRowMapper;
-import ru.yandex.practicum.filmorate.dal.mappers.GenreRowMapper;
-import ru.yandex.practicum.filmorate.dal.mappers.MpaRowMapper;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exceptions.InternalServerException;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.service.*;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.PopularityLeaderboard;
 
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -33,89 +39,71 @@ public class FilmDbStorage extends BaseRepository<Film> implements FilmStorage {
     private static final String DELETE_ALL_DIRECTORS_ON_FILM_UPDATE_QUERY = "DELETE FROM FILMS_DIRECTORS" +
             " WHERE FILM_ID = ?";
     private static final String FIND_ALL_FILMS_QUERY = "SELECT * FROM FILMS";
+    private static final String FIND_FILMS_PAGE_QUERY = "SELECT * FROM FILMS WHERE FILM_ID > ? ORDER BY FILM_ID " +
+            "LIMIT ?";
     private static final String FIND_FILM_BY_ID_QUERY = "SELECT * FROM FILMS WHERE FILM_ID = ?";
     private static final String FIND_LIKES_BY_FILM_ID = "SELECT USER_ID FROM LIKES WHERE FILM_ID = ?";
+    private static final String FIND_ALL_LIKES_QUERY = "SELECT USER_ID, FILM_ID FROM LIKES";
+    private static final String FIND_LIKES_BY_FILM_IDS = "SELECT FILM_ID, USER_ID FROM LIKES WHERE FILM_ID = ANY(?)";
+    private static final String FIND_GENRES_BY_FILM_IDS = "SELECT FILM_ID, GENRE_ID FROM FILMS_GENRES " +
+            "WHERE FILM_ID = ANY(?) ORDER BY FILM_ID, GENRE_ID";
+    private static final String FIND_DIRECTORS_BY_FILM_IDS = "SELECT FILM_ID, DIRECTOR_ID FROM FILMS_DIRECTORS " +
+            "WHERE FILM_ID = ANY(?) ORDER BY FILM_ID, DIRECTOR_ID";
     private static final String INSERT_FILM_QUERY = "INSERT INTO FILMS(FILM_NAME, RELEASE_DATE, DURATION, " +
             "DESCRIPTION, MPA_ID) VALUES (?,?,?,?,?)";
-    private static final String INSERT_LIKE_QUERY = "INSERT INTO LIKES(FILM_ID, USER_ID) VALUES (?,?)";
+    private static final String INSERT_LIKE_QUERY = "INSERT INTO LIKES(FILM_ID, USER_ID) " +
+            "SELECT CAST(? AS BIGINT), CAST(? AS BIGINT) " +
+            "WHERE NOT EXISTS (SELECT 1 FROM LIKES WHERE FILM_ID = ? AND USER_ID = ?)";
+    private static final String INCREASE_LIKE_COUNT_QUERY = "UPDATE FILMS SET LIKE_COUNT = LIKE_COUNT + 1 " +
+            "WHERE FILM_ID = ?";
+    private static final String DECREASE_LIKE_COUNT_QUERY = "UPDATE FILMS SET LIKE_COUNT = LIKE_COUNT - 1 " +
+            "WHERE FILM_ID = ?";
+    private static final String FIND_FILMS_BY_IDS_QUERY = "SELECT * FROM FILMS WHERE FILM_ID = ANY(?)";
+    private static final String FIND_POPULARITY_STATS_QUERY = "SELECT FILM_ID, LIKE_COUNT, RELEASE_DATE FROM FILMS";
+    private static final String FIND_ALL_FILMS_GENRES_QUERY = "SELECT FILM_ID, GENRE_ID FROM FILMS_GENRES";
+    private static final String FIND_DIRECTOR_FILMS_QUERY = "SELECT FILMS.* FROM FILMS_DIRECTORS " +
+            "JOIN FILMS ON FILMS.FILM_ID = FILMS_DIRECTORS.FILM_ID WHERE FILMS_DIRECTORS.DIRECTOR_ID = ? ";
+    private static final String FIND_DIRECTOR_FILMS_BY_YEAR_QUERY = FIND_DIRECTOR_FILMS_QUERY +
+            "ORDER BY FILMS.RELEASE_DATE, FILMS.FILM_ID";
+    private static final String FIND_DIRECTOR_FILMS_BY_LIKES_QUERY = FIND_DIRECTOR_FILMS_QUERY +
+            "ORDER BY FILMS.LIKE_COUNT DESC, FILMS.FILM_ID";
+    private static final String FIND_ALL_FILM_NAMES_QUERY = "SELECT FILM_ID, FILM_NAME FROM FILMS";
+    private static final String FIND_ALL_FILMS_DIRECTORS_QUERY = "SELECT FILM_ID, DIRECTOR_ID FROM FILMS_DIRECTORS";
     private static final String INSERT_FILM_GENRE_QUERY = "INSERT INTO FILMS_GENRES(FILM_ID, GENRE_ID) VALUES (?,?)";
     private static final String INSERT_FILM_DIRECTOR_QUERY = "INSERT INTO FILMS_DIRECTORS(FILM_ID, DIRECTOR_ID)" +
             " VALUES (?,?)";
     private static final String UPDATE_QUERY = "UPDATE FILMS SET FILM_NAME = ?, DESCRIPTION = ?, RELEASE_DATE = ?, " +
             "DURATION = ?, MPA_ID = ? WHERE FILM_ID = ?";
     private static final String DELETE_LIKE_QUERY = "DELETE FROM LIKES WHERE FILM_ID = ? AND USER_ID = ?";
-    private static final String COUNT_LIKES_QUERY = "SELECT COUNT(*) FROM LIKES WHERE FILM_ID =? AND USER_ID =?";
-    private static final String COMMON_FILMS_QUERY = "    " +
-            "    WITH USER_films AS (\n" +
-            "                        SELECT f.film_id,\n" +
-            "                               count(*) AS cnt\n" +
-            "                          FROM LIKES l\n" +
-            "                         INNER JOIN films f\n" +
-            "                            ON f.film_id = l.film_id\n" +
-            "                         WHERE l.user_id = ?\n" +
-            "                         GROUP BY f.film_id\n" +
-            "                        ),\n" +
-            "       friend_films AS (\n" +
-            "                        SELECT f.film_id,\n" +
-            "                               count(*) AS cnt\n" +
-            "                          FROM LIKES l\n" +
-            "                         INNER JOIN films f\n" +
-            "                            ON f.film_id = l.film_id\n" +
-            "                         WHERE l.user_id = ?\n" +
-            "                         GROUP BY f.film_id\n" +
-            "                       )\n" +
-            "                SELECT f.*\n" +
-            "                  FROM films f\n" +
-            "                 INNER JOIN USER_films u \n" +
-            "                    ON f.FILM_ID = u.film_id\n" +
-            "                 INNER JOIN friend_films ff \n" +
-            "                    ON ff.film_id = f.FILM_ID \n" +
-            "                 ORDER BY u.cnt desc";
     private static final String DELETE_FILM_QUERY = "DELETE FROM FILMS WHERE FILM_ID = ?";
     private static final String DELETE_FILM_GENRE_QUERY = "DELETE FROM FILMS_GENRES WHERE FILM_ID = ?";
     private static final String DELETE_FILM_LIKE_QUERY = "DELETE FROM LIKES WHERE FILM_ID = ?";
     private static final String DELETE_FILM_REVIEW_QUERY = "DELETE FROM REVIEWS WHERE FILM_ID = ?";
-    private static final String GET_USER_LIKES_QUERY = """
-            WITH prep AS (
-                SELECT l1.USER_ID,
-                       COUNT(*) AS cnt
-                  FROM likes l1
-                 INNER JOIN likes l2 ON l2.FILM_ID = l1.FILM_ID
-                                    AND l2.USER_ID = ?
-                 WHERE l1.USER_ID != ?
-                 GROUP BY l1.USER_ID
-                 ORDER BY COUNT(*) DESC
-            )
-            SELECT f.*
-              FROM LIKES l1
-             INNER JOIN prep p ON p.USER_ID = l1.USER_ID
-             LEFT JOIN likes l2 ON l2.FILM_ID = l1.FILM_ID
-                               AND l2.USER_ID = ?
-             INNER JOIN films f ON f.FILM_ID = l1.FILM_ID
-             WHERE l2.FILM_ID IS NULL
-             ORDER BY p.cnt DESC""";
-    private final RowMapper<Mpa> mpaMapper = new MpaRowMapper();
-    private final RowMapper<Genre> genreMapper = new GenreRowMapper();
-    private final RowMapper<Director> directorMapper = new DirectorRowMapper();
-
-    private final MpaDbService mpaDbService = new MpaDbService(new MpaDbStorage(jdbc, mpaMapper));
-    private final GenreFieldsDbValidator genreDbValidator = new GenreFieldsDbValidator(jdbc, genreMapper);
-    private final GenreDbService genreDbService = new GenreDbService(new GenreDbStorage(jdbc, genreMapper));
-
-    private final DirectorDbValidatorService directorDbValidatorService =
-            new DirectorDbValidatorService(jdbc, directorMapper);
-
-    private final DirectorDbService directorDbService = new DirectorDbService(new DirectorDbStorage(jdbc,
-            directorMapper), directorDbValidatorService);
+
+    private final MpaDbService mpaDbService;
+    private final GenreFieldsDbValidator genreDbValidator;
+    private final GenreDbService genreDbService;
+
+    private final DirectorDbService directorDbService;
 
     /**
      * Конструктор для инициализации FilmDbStorage.
      *
-     * @param jdbc   JdbcTemplate для выполнения SQL-запросов.
-     * @param mapper RowMapper для преобразования строк результата SQL-запроса в объекты Film.
+     * @param jdbc              JdbcTemplate для выполнения SQL-запросов.
+     * @param mapper            RowMapper для преобразования строк результата SQL-запроса в объекты Film.
+     * @param mpaDbService      Сервис справочника рейтингов MPA.
+     * @param genreDbService    Сервис справочника жанров.
+     * @param genreDbValidator  Проверка существования жанров.
+     * @param directorDbService Сервис режиссеров с кэшем по идентификатору.
      */
-    public FilmDbStorage(JdbcTemplate jdbc, RowMapper<Film> mapper) {
+    public FilmDbStorage(JdbcTemplate jdbc, RowMapper<Film> mapper, MpaDbService mpaDbService,
+                         GenreDbService genreDbService, GenreFieldsDbValidator genreDbValidator,
+                         DirectorDbService directorDbService) {
         super(jdbc, mapper);
+        this.mpaDbService = mpaDbService;
+        this.genreDbService = genreDbService;
+        this.genreDbValidator = genreDbValidator;
+        this.directorDbService = directorDbService;
     }
 
     /**
@@ -125,18 +113,18 @@ public class FilmDbStorage extends BaseRepository<Film> implements FilmStorage {
      */
     @Override
     public Collection<Film> getAll() {
-        List<Film> films = findMany(FIND_ALL_FILMS_QUERY);
-        for (Film film : films) {
-            film.setLikes(new HashSet<>(findManyInstances(FIND_LIKES_BY_FILM_ID, Long.class, film.getId())));
-            film.setMpa(mpaDbService.findById(film.getMpa().getId()));
-            film.setGenres(new HashSet<>(genreDbService.findGenresByFilmId(film.getId())));
-            List<Director> directors = directorDbService.findDirectorsByFilmId(film.getId());
-            for (Director director : directors) {
-                director.setName(directorDbService.findDirectorNameById(director.getId()));
-            }
-            film.setDirectors(new HashSet<>(directors));
-        }
-        return films;
+        return hydrate(findMany(FIND_ALL_FILMS_QUERY));
+    }
+
+    /**
+     * Получает страницу фильмов, упорядоченных по идентификатору (keyset-пагинация).
+     *
+     * @param after Идентификатор, после которого начинается страница.
+     * @param limit Максимальное количество фильмов на странице.
+     * @return Список фильмов с идентификаторами больше after, не длиннее limit.
+     */
+    public List<Film> getPage(long after, int limit) {
+        return hydrate(findMany(FIND_FILMS_PAGE_QUERY, after, limit));
     }
 
     /**
@@ -166,9 +154,7 @@ public class FilmDbStorage extends BaseRepository<Film> implements FilmStorage {
         }
         Set<Director> directors = film.getDirectors();
         if (directors != null && !directors.isEmpty()) {
-            for (Director director : directors) {
-                directorDbValidatorService.checkDirectorId(director.getId());
-            }
+            directorDbService.checkDirectorIds(directors.stream().map(Director::getId).toList());
 
             for (Director director : directors) {
                 director.setName(directorDbService.findDirectorNameById(director.getId()));
@@ -183,6 +169,58 @@ public class FilmDbStorage extends BaseRepository<Film> implements FilmStorage {
         return film;
     }
 
+    /**
+     * Добавляет фильмы в базу данных пакетами в одной транзакции: одним пакетом INSERT в FILMS,
+     * затем одним пакетом в FILMS_GENRES и одним в FILMS_DIRECTORS.
+     * Идентификаторы MPA, жанров и режиссеров должны быть проверены заранее.
+     * Фильмам присваиваются сгенерированные идентификаторы.
+     *
+     * @param films Фильмы, которые необходимо добавить.
+     * @throws InternalServerException Если база данных не вернула идентификаторы фильмов.
+     */
+    @Transactional
+    public void addFilms(List<Film> films) {
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.batchUpdate(connection -> connection.prepareStatement(INSERT_FILM_QUERY,
+                Statement.RETURN_GENERATED_KEYS), new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Film film = films.get(i);
+                        ps.setString(1, film.getName());
+                        ps.setObject(2, film.getReleaseDate());
+                        ps.setObject(3, film.getDuration());
+                        ps.setString(4, film.getDescription());
+                        ps.setInt(5, film.getMpa().getId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return films.size();
+                    }
+                }, keyHolder);
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.size() != films.size()) {
+            throw new InternalServerException("Не удалось сохранить данные");
+        }
+        List<Object[]> filmGenres = new ArrayList<>();
+        List<Object[]> filmDirectors = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            film.setId(((Number) keys.get(i).values().iterator().next()).longValue());
+            if (film.getGenres() != null) {
+                film.getGenres().stream().map(Genre::getId).distinct().sorted()
+                        .forEach(genreId -> filmGenres.add(new Object[]{film.getId(), genreId}));
+            }
+            if (film.getDirectors() != null) {
+                film.getDirectors().stream().map(Director::getId).distinct().sorted()
+                        .forEach(directorId -> filmDirectors.add(new Object[]{film.getId(), directorId}));
+            }
+        }
+        jdbc.batchUpdate(INSERT_FILM_GENRE_QUERY, filmGenres);
+        jdbc.batchUpdate(INSERT_FILM_DIRECTOR_QUERY, filmDirectors);
+        log.info("Добавлено фильмов пакетом: {}", films.size());
+    }
+
     /**
      * Обновляет существующий фильм в базе данных.
      *
@@ -206,9 +244,7 @@ public class FilmDbStorage extends BaseRepository<Film> implements FilmStorage {
         }
         Set<Director> director = updatedFilm.getDirectors();
         if (director != null) {
-            for (Director d : director) {
-                directorDbValidatorService.checkDirectorId(d.getId());
-            }
+            directorDbService.checkDirectorIds(director.stream().map(Director::getId).toList());
             delete(DELETE_ALL_DIRECTORS_ON_FILM_UPDATE_QUERY, updatedFilm.getId());
             for (Director d : director) {
                 d.setName(directorDbService.findDirectorNameById(d.getId()));
@@ -246,53 +282,138 @@ public class FilmDbStorage extends BaseRepository<Film> implements FilmStorage {
      */
     public Film getFilmById(Long id) {
         Film film = findById(id).orElseThrow(() -> new NotFoundException("Фильм с id " + id + " не найден"));
-        Set<Genre> genres = film.getGenres();
-        for (Genre genre : genres) {
-            genre.setName(genreDbService.findGenreNameById(genre.getId()));
-        }
-        film.setLikes(new HashSet<>(findManyInstances(FIND_LIKES_BY_FILM_ID, Long.class, id)));
-        film.getMpa().setName(mpaDbService.findMpaNameById(film.getMpa().getId()));
-        Set<Director> directors = new HashSet<>(directorDbService.findDirectorsByFilmId(id));
-        for (Director director : directors) {
-            director.setName(directorDbService.findDirectorNameById(director.getId()));
-        }
-        film.setDirectors(directors);
-        film.setGenres(new HashSet<>(genreDbService.findGenresByFilmId(id)));
+        hydrate(List.of(film));
         return film;
     }
 
     /**
      * Добавляет лайк к фильму от пользователя.
+     * Повторный лайк того же пользователя не учитывается. Счетчик LIKE_COUNT фильма
+     * изменяется в той же транзакции, что и таблица LIKES.
      *
      * @param filmId Идентификатор фильма, к которому добавляется лайк.
      * @param userId Идентификатор пользователя, который ставит лайк.
+     * @return true, если лайк добавлен, false - если он уже был.
      * @throws NotFoundException Если фильм или пользователь не найдены.
      */
-    public void addLike(Long filmId, Long userId) {
-        insert(INSERT_LIKE_QUERY, filmId, userId);
+    @Transactional
+    public boolean addLike(Long filmId, Long userId) {
+        if (jdbc.update(INSERT_LIKE_QUERY, filmId, userId, filmId, userId) == 0) {
+            return false;
+        }
+        update(INCREASE_LIKE_COUNT_QUERY, filmId);
+        return true;
     }
 
     /**
      * Удаляет лайк пользователя от фильма.
+     * Счетчик LIKE_COUNT фильма изменяется в той же транзакции, что и таблица LIKES.
      *
      * @param filmId Идентификатор фильма, у которого удаляется лайк.
      * @param userId Идентификатор пользователя, который удаляет лайк.
      * @throws NotFoundException Если фильма нет лайка от пользователя.
      */
+    @Transactional
     public void deleteLike(Long filmId, Long userId) {
-        if (findManyInstances(COUNT_LIKES_QUERY, Long.class, filmId, userId).getFirst() == 0) {
+        if (!deleteByTwoIds(DELETE_LIKE_QUERY, filmId, userId)) {
             throw new NotFoundException("У фильма с id " + filmId + " нет лайка от пользователя с id " + userId);
         }
-        deleteByTwoIds(DELETE_LIKE_QUERY, filmId, userId);
+        update(DECREASE_LIKE_COUNT_QUERY, filmId);
     }
 
-    public List<Film> getCommonFilms(long userId, long friendId) {
-        List<Film> result = super.findMany(COMMON_FILMS_QUERY, userId, friendId);
-        for (Film film : result) {
-            film.setGenres(new HashSet<>(genreDbService.findGenresByFilmId(film.getId())));
-            film.getMpa().setName(mpaDbService.findMpaNameById(film.getMpa().getId()));
+    /**
+     * Получает фильмы по списку идентификаторов с заполненными связанными данными.
+     *
+     * @param ids Идентификаторы фильмов.
+     * @return Фильмы в порядке следования идентификаторов; несуществующие идентификаторы пропускаются.
+     */
+    public List<Film> getFilmsByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
         }
-        return result;
+        Map<Long, Film> filmsById = findMany(FIND_FILMS_BY_IDS_QUERY, (Object) ids.toArray(new Long[0])).stream()
+                .collect(Collectors.toMap(Film::getId, film -> film));
+        return hydrate(ids.stream()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Получает данные о всех фильмах для рейтинга популярности: количество лайков, год выхода и жанры.
+     *
+     * @return Данные о всех фильмах.
+     */
+    public List<PopularityLeaderboard.FilmStats> getPopularityStats() {
+        Map<Long, Set<Integer>> genresByFilm = new HashMap<>();
+        jdbc.query(FIND_ALL_FILMS_GENRES_QUERY, (RowCallbackHandler) rs -> genresByFilm
+                .computeIfAbsent(rs.getLong("FILM_ID"), filmId -> new HashSet<>())
+                .add(rs.getInt("GENRE_ID")));
+        return jdbc.query(FIND_POPULARITY_STATS_QUERY, (rs, rowNum) -> {
+            long filmId = rs.getLong("FILM_ID");
+            Date releaseDate = rs.getDate("RELEASE_DATE");
+            return new PopularityLeaderboard.FilmStats(filmId, rs.getLong("LIKE_COUNT"),
+                    releaseDate == null ? null : releaseDate.toLocalDate().getYear(),
+                    Set.copyOf(genresByFilm.getOrDefault(filmId, Set.of())));
+        });
+    }
+
+    /**
+     * Получает лайки всех пользователей для индекса лайков.
+     *
+     * @return Идентификаторы понравившихся фильмов по идентификатору пользователя.
+     */
+    public Map<Long, List<Long>> getLikedFilmIdsByUser() {
+        Map<Long, List<Long>> likes = new HashMap<>();
+        jdbc.query(FIND_ALL_LIKES_QUERY, (RowCallbackHandler) rs -> likes
+                .computeIfAbsent(rs.getLong("USER_ID"), userId -> new ArrayList<>())
+                .add(rs.getLong("FILM_ID")));
+        return likes;
+    }
+
+    /**
+     * Получает фильмы режиссера, упорядоченные по дате выхода.
+     *
+     * @param directorId Идентификатор режиссера.
+     * @return Фильмы режиссера с заполненными связанными данными.
+     */
+    public List<Film> getDirectorFilmsByYear(long directorId) {
+        return hydrate(findMany(FIND_DIRECTOR_FILMS_BY_YEAR_QUERY, directorId));
+    }
+
+    /**
+     * Получает фильмы режиссера, упорядоченные по убыванию количества лайков.
+     *
+     * @param directorId Идентификатор режиссера.
+     * @return Фильмы режиссера с заполненными связанными данными.
+     */
+    public List<Film> getDirectorFilmsByLikes(long directorId) {
+        return hydrate(findMany(FIND_DIRECTOR_FILMS_BY_LIKES_QUERY, directorId));
+    }
+
+    /**
+     * Получает названия всех фильмов для поискового индекса.
+     *
+     * @return Названия фильмов по идентификатору фильма.
+     */
+    public Map<Long, String> getFilmNames() {
+        Map<Long, String> names = new HashMap<>();
+        jdbc.query(FIND_ALL_FILM_NAMES_QUERY, (RowCallbackHandler) rs ->
+                names.put(rs.getLong("FILM_ID"), rs.getString("FILM_NAME")));
+        return names;
+    }
+
+    /**
+     * Получает связи всех фильмов с режиссерами для поискового индекса.
+     *
+     * @return Идентификаторы режиссеров по идентификатору фильма.
+     */
+    public Map<Long, Set<Long>> getFilmDirectorIds() {
+        Map<Long, Set<Long>> directorIds = new HashMap<>();
+        jdbc.query(FIND_ALL_FILMS_DIRECTORS_QUERY, (RowCallbackHandler) rs -> directorIds
+                .computeIfAbsent(rs.getLong("FILM_ID"), filmId -> new HashSet<>())
+                .add(rs.getLong("DIRECTOR_ID")));
+        return directorIds;
     }
 
     public void deleteFilm(long filmId) {
@@ -302,17 +423,60 @@ public class FilmDbStorage extends BaseRepository<Film> implements FilmStorage {
         delete(DELETE_FILM_QUERY, filmId);
     }
 
-    public List<Film> getRecommendations(long id) {
-        List<Film> films = findMany(GET_USER_LIKES_QUERY, id, id, id);
+    /**
+     * Заполняет лайки, рейтинг, жанры и режиссеров у списка фильмов.
+     * <p>
+     * Вместо отдельных запросов на каждый фильм выполняется фиксированное число запросов: по одному
+     * на лайки, жанры и режиссеров всех переданных фильмов (по списку идентификаторов). Названия жанров
+     * и рейтингов берутся из снимка справочников, режиссеры - из кэша {@link DirectorDbService}.
+     * Количество обращений к базе не зависит от количества фильмов.
+     * </p>
+     *
+     * @param films Фильмы, загруженные из таблицы FILMS.
+     * @return Тот же список фильмов с заполненными связанными данными.
+     */
+    private List<Film> hydrate(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        Map<Long, Film> filmsById = new LinkedHashMap<>();
+        for (Film film : films) {
+            if (filmsById.putIfAbsent(film.getId(), film) == null) {
+                film.setLikes(new HashSet<>());
+                film.setGenres(new LinkedHashSet<>());
+                film.setDirectors(new LinkedHashSet<>());
+            }
+        }
+        Long[] ids = filmsById.keySet().toArray(new Long[0]);
+
+        jdbc.query(FIND_LIKES_BY_FILM_IDS, (RowCallbackHandler) rs -> filmsById.get(rs.getLong("FILM_ID"))
+                .getLikes().add(rs.getLong("USER_ID")), (Object) ids);
+        jdbc.query(FIND_GENRES_BY_FILM_IDS, (RowCallbackHandler) rs -> filmsById.get(rs.getLong("FILM_ID"))
+                .getGenres().add(genreDbService.findById(rs.getInt("GENRE_ID"))), (Object) ids);
+        Map<Long, List<Long>> directorIdsByFilm = new LinkedHashMap<>();
+        jdbc.query(FIND_DIRECTORS_BY_FILM_IDS, (RowCallbackHandler) rs -> directorIdsByFilm
+                .computeIfAbsent(rs.getLong("FILM_ID"), filmId -> new ArrayList<>())
+                .add(rs.getLong("DIRECTOR_ID")), (Object) ids);
+        Map<Long, Director> directors = directorDbService.findByIds(directorIdsByFilm.values().stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toSet()));
+        directorIdsByFilm.forEach((filmId, directorIds) -> {
+            for (Long directorId : directorIds) {
+                Director director = directors.get(directorId);
+                if (director != null) {
+                    filmsById.get(filmId).getDirectors().add(director);
+                }
+            }
+        });
+
         for (Film film : films) {
-            film.setLikes(new HashSet<>(findManyInstances(FIND_LIKES_BY_FILM_ID, Long.class, film.getId())));
-            film.setMpa(mpaDbService.findById(film.getMpa().getId()));
-            film.setGenres(new HashSet<>(genreDbService.findGenresByFilmId(film.getId())));
-            List<Director> directors = directorDbService.findDirectorsByFilmId(film.getId());
-            for (Director director : directors) {
-                director.setName(directorDbService.findDirectorNameById(director.getId()));
+            Film source = filmsById.get(film.getId());
+            if (source != film) {
+                film.setLikes(source.getLikes());
+                film.setGenres(source.getGenres());
+                film.setDirectors(source.getDirectors());
             }
-            film.setDirectors(new HashSet<>(directors));
+            film.setMpa(mpaDbService.findById(film.getMpa().getId()));
         }
         return films;
     }
@@ -1,49 +1,108 @@
 package ru.yandex.practicum.filmorate.dal;
 
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Event;
 
+import java.nio.file.Path;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Класс для работы с историей действий пользователей в базе данных.
  * Позволяет добавлять события и получать историю событий для конкретного пользователя.
+ * Если задано {@code filmorate.event-log.enabled=true}, история хранится не в таблице HISTORY_ACTIONS,
+ * а в {@link SegmentedEventLog} в каталоге {@code filmorate.event-log.directory}. Журнал привязан к поколению
+ * схемы из таблицы SCHEMA_GENERATION: если schema.sql пересоздал таблицы, сегменты прежней истории удаляются.
  */
 @Slf4j
 @Repository
 public class HistoryDbStorage extends BaseRepository<Event> {
     // SQL-запросы
-    private static final String INSERT_QUERY = "INSERT INTO HISTORY_ACTIONS(USER_ID, TIME_ACTION, TYPE, OPERATION," +
-            " ENTITY_ID)" +
-            " VALUES (?,?,?,?,?)";
-    private static final String FIND_EVENT_BY_USER_ID_QUERY = "SELECT * FROM HISTORY_ACTIONS WHERE USER_ID = ?";
+    private static final String INSERT_QUERY = "MERGE INTO HISTORY_ACTIONS(EVENT_ID, USER_ID, TIME_ACTION, TYPE," +
+            " OPERATION, ENTITY_ID) KEY (EVENT_ID)" +
+            " VALUES (?,?,?,?,?,?)";
+    private static final String FIND_EVENTS_AFTER_QUERY = "SELECT * FROM HISTORY_ACTIONS WHERE USER_ID = ? " +
+            "AND EVENT_ID > ? ORDER BY EVENT_ID";
+    private static final String FIND_EVENTS_AFTER_PAGE_QUERY = "SELECT * FROM HISTORY_ACTIONS WHERE USER_ID = ? " +
+            "AND EVENT_ID > ? ORDER BY EVENT_ID LIMIT ?";
+    private static final String FIND_MAX_EVENT_ID_QUERY = "SELECT COALESCE(MAX(EVENT_ID), 0) FROM HISTORY_ACTIONS";
+    private static final String FIND_ALL_EVENTS_QUERY = "SELECT * FROM HISTORY_ACTIONS ORDER BY EVENT_ID";
+    private static final String FIND_EVENT_BY_USER_ID_QUERY = "SELECT * FROM HISTORY_ACTIONS WHERE USER_ID = ? " +
+            "ORDER BY EVENT_ID";
+    private static final String FIND_EVENTS_PAGE_QUERY = "SELECT * FROM HISTORY_ACTIONS WHERE USER_ID = ? " +
+            "AND EVENT_ID < ? ORDER BY EVENT_ID DESC LIMIT ?";
 
-    public HistoryDbStorage(JdbcTemplate jdbc, RowMapper<Event> mapper) {
+    private static final String FIND_SCHEMA_GENERATION_QUERY = "SELECT GENERATION_ID FROM SCHEMA_GENERATION";
+
+    private final SegmentedEventLog eventLog;
+
+    public HistoryDbStorage(JdbcTemplate jdbc, RowMapper<Event> mapper,
+                            @Value("${filmorate.event-log.enabled:false}") boolean eventLogEnabled,
+                            @Value("${filmorate.event-log.directory:./db/events}") String eventLogDirectory,
+                            @Value("${filmorate.event-log.segment-records:1000000}") int segmentRecords) {
         super(jdbc, mapper);
+        this.eventLog = eventLogEnabled ? new SegmentedEventLog(Path.of(eventLogDirectory), segmentRecords,
+                jdbc.queryForObject(FIND_SCHEMA_GENERATION_QUERY, String.class)) : null;
     }
 
     /**
-     * Добавляет событие.
+     * Закрывает файловый журнал событий, если он используется.
+     */
+    @PreDestroy
+    public void close() {
+        if (eventLog != null) {
+            eventLog.close();
+        }
+    }
+
+    /**
+     * Возвращает наибольший идентификатор события в истории.
      *
-     * @param event Событие.
-     * @return Событие с выставленным уникальным id.
-     */
-    public Event addEvent(Event event) {
-        long id = insertWithGenId(
-                INSERT_QUERY,
-                event.getUserId(),
-                event.getTimestamp(),
-                event.getEventType().toString(),
-                event.getOperation().toString(),
-                event.getEntityId()
-        );
-        event.setEventId(id);
-        log.info("Создан ЭВЕНТ c ID {}. Добавлено действие {} {} = {} пользователя c ID = {}", event.getEventId(), event.getEventType().toString(),
-                event.getOperation().toString(), event.getEntityId(), event.getUserId());
-        return event;
+     * @return Идентификатор последнего события или 0, если история пуста.
+     */
+    public long getMaxEventId() {
+        if (eventLog != null) {
+            return eventLog.getMaxEventId();
+        }
+        return jdbc.queryForObject(FIND_MAX_EVENT_ID_QUERY, Long.class);
+    }
+
+    /**
+     * Добавляет события одним пакетным запросом.
+     * Повторная запись уже записанных событий их не дублирует.
+     *
+     * @param events События с уже присвоенными идентификаторами в порядке их совершения.
+     */
+    public void addEvents(List<Event> events) {
+        if (eventLog != null) {
+            eventLog.append(events);
+        } else {
+            insertEvents(events);
+        }
+        for (Event event : events) {
+            log.info("Добавлено действие {} {} = {} пользователя c ID = {}", event.getEventType().toString(),
+                    event.getOperation().toString(), event.getEntityId(), event.getUserId());
+        }
+    }
+
+    private void insertEvents(List<Event> events) {
+        jdbc.batchUpdate(INSERT_QUERY, events.stream()
+                .map(event -> new Object[]{
+                        event.getEventId(),
+                        event.getUserId(),
+                        event.getTimestamp(),
+                        event.getEventType().toString(),
+                        event.getOperation().toString(),
+                        event.getEntityId()})
+                .toList());
     }
 
     /**
@@ -53,9 +112,76 @@ public class HistoryDbStorage extends BaseRepository<Event> {
      * @return Колекция Event, состоящая из событий пользователя.
      */
     public Collection<Event> getEventsByUser(long userId) {
+        if (eventLog != null) {
+            return eventLog.getEventsByUser(userId);
+        }
         return findMany(
                 FIND_EVENT_BY_USER_ID_QUERY,
                 userId
         );
     }
+
+    /**
+     * Находит страницу действий пользователя, предшествующих указанному событию.
+     * Страница читается по индексу (USER_ID, EVENT_ID) с конца, поэтому время запроса
+     * не зависит от длины истории пользователя.
+     *
+     * @param userId Идентификатор пользователя.
+     * @param before Идентификатор события, до которого выбираются действия (не включительно).
+     * @param limit  Максимальное количество событий.
+     * @return Список из не более чем limit последних событий до before в порядке возрастания идентификатора.
+     */
+    public List<Event> getEventsPage(long userId, long before, int limit) {
+        if (eventLog != null) {
+            return eventLog.getEventsPage(userId, before, limit);
+        }
+        List<Event> events = findMany(FIND_EVENTS_PAGE_QUERY, userId, before, limit);
+        Collections.reverse(events);
+        return events;
+    }
+
+    /**
+     * Находит страницу действий пользователя, следующих за указанным событием.
+     *
+     * @param userId Идентификатор пользователя.
+     * @param after  Идентификатор события, после которого выбираются действия (не включительно).
+     * @param limit  Максимальное количество событий.
+     * @return Список из не более чем limit первых событий после after в порядке возрастания идентификатора.
+     */
+    public List<Event> getEventsAfter(long userId, long after, int limit) {
+        if (eventLog != null) {
+            return eventLog.getEventsAfter(userId, after, limit);
+        }
+        return findMany(FIND_EVENTS_AFTER_PAGE_QUERY, userId, after, limit);
+    }
+
+    /**
+     * Последовательно передает действия пользователя, следующие за указанным событием,
+     * в обработчик по мере чтения строк из базы данных.
+     *
+     * @param userId Идентификатор пользователя.
+     * @param after  Идентификатор события, после которого выбираются действия (не включительно).
+     * @param action Обработчик, вызываемый для каждого события в порядке возрастания идентификатора.
+     */
+    public void forEachEventByUser(long userId, long after, Consumer<Event> action) {
+        if (eventLog != null) {
+            eventLog.forEachEventByUser(userId, after, action);
+            return;
+        }
+        jdbc.query(FIND_EVENTS_AFTER_QUERY, (RowCallbackHandler) rs -> action.accept(mapper.mapRow(rs, rs.getRow())),
+                userId, after);
+    }
+
+    /**
+     * Последовательно передает все действия всех пользователей в обработчик по мере чтения строк из базы данных.
+     *
+     * @param action Обработчик, вызываемый для каждого события в порядке возрастания идентификатора.
+     */
+    public void forEachEvent(Consumer<Event> action) {
+        if (eventLog != null) {
+            eventLog.forEachEvent(action);
+            return;
+        }
+        jdbc.query(FIND_ALL_EVENTS_QUERY, (RowCallbackHandler) rs -> action.accept(mapper.mapRow(rs, rs.getRow())));
+    }
 }
@@ -0,0 +1,287 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.BloomFilter;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Реестр существующих идентификаторов для проверок при записи.
+ * <p>
+ * Идентификаторы режиссеров загружаются при старте в множество, и проверка не обращается к базе данных.
+ * Рейтинги MPA и жанры проверяются по справочникам {@code ReferenceDataService} и в реестре не хранятся.
+ * Для больших таблиц (пользователи, фильмы) хранится ограниченный кэш ({@code filmorate.id-registry.cache-size})
+ * недавно проверенных идентификаторов и фильтр Блума по всем идентификаторам таблицы. Если фильтр отвечает,
+ * что идентификатора нет, проверка завершается без обращения к базе данных, иначе выполняется запрос
+ * {@code SELECT 1} по первичному ключу.
+ * Записи, созданные и удаленные через сервисы приложения, сразу отражаются в реестре; удаленные
+ * идентификаторы остаются в фильтре до перезапуска и проверяются запросом.
+ * </p>
+ * <p>
+ * Фильтр рассчитывается на {@code filmorate.id-registry.bloom.expected-ids} идентификаторов (или на
+ * текущее число записей, если оно больше) с вероятностью ложного срабатывания
+ * {@code filmorate.id-registry.bloom.false-positive-rate}; расход памяти пропорционален обоим параметрам
+ * и выводится в лог при загрузке.
+ * </p>
+ * <p>
+ * Для каждой таблицы считается число проверок, выполненных без обращения к базе данных (попадания),
+ * число запросов к базе (промахи) и число запросов, не нашедших запись (ложные срабатывания фильтра).
+ * </p>
+ */
+@Slf4j
+@Component
+public class IdRegistry {
+
+    /**
+     * Таблицы, идентификаторы которых проверяет реестр.
+     */
+    public enum Table {
+        DIRECTORS("SELECT DIRECTOR_ID FROM DIRECTORS", null),
+        USERS("SELECT USER_ID FROM USERS", "SELECT 1 FROM USERS WHERE USER_ID = ?"),
+        FILMS("SELECT FILM_ID FROM FILMS", "SELECT 1 FROM FILMS WHERE FILM_ID = ?");
+
+        private final String loadQuery;
+        private final String probeQuery;
+
+        Table(String loadQuery, String probeQuery) {
+            this.loadQuery = loadQuery;
+            this.probeQuery = probeQuery;
+        }
+    }
+
+    private final JdbcTemplate jdbc;
+    private final long bloomExpectedIds;
+    private final double bloomFalsePositiveRate;
+    private final Map<Table, IdSet> sets = new EnumMap<>(Table.class);
+
+    public IdRegistry(JdbcTemplate jdbc, @Value("${filmorate.id-registry.cache-size:100000}") int cacheSize,
+                      @Value("${filmorate.id-registry.bloom.expected-ids:1000000}") long bloomExpectedIds,
+                      @Value("${filmorate.id-registry.bloom.false-positive-rate:0.01}")
+                      double bloomFalsePositiveRate) {
+        this.jdbc = jdbc;
+        this.bloomExpectedIds = bloomExpectedIds;
+        this.bloomFalsePositiveRate = bloomFalsePositiveRate;
+        for (Table table : Table.values()) {
+            sets.put(table, table.probeQuery == null ? new AllIds()
+                    : new CachedIds(cacheSize, new BloomFilter(bloomExpectedIds, bloomFalsePositiveRate)));
+        }
+    }
+
+    /**
+     * Загружает идентификаторы режиссеров, перестраивает фильтры Блума и очищает кэши больших.
+     */
+    @PostConstruct
+    public void refresh() {
+        for (Table table : Table.values()) {
+            if (table.probeQuery == null) {
+                Set<Long> ids = ConcurrentHashMap.newKeySet();
+                jdbc.query(table.loadQuery, (RowCallbackHandler) rs -> ids.add(rs.getLong(1)));
+                ((AllIds) sets.get(table)).replace(ids);
+                log.info("Загружены идентификаторы {}: {}", table, ids.size());
+            } else {
+                Long count = jdbc.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+                BloomFilter filter = new BloomFilter(Math.max(bloomExpectedIds, count), bloomFalsePositiveRate);
+                jdbc.query(table.loadQuery, (RowCallbackHandler) rs -> filter.put(rs.getLong(1)));
+                ((CachedIds) sets.get(table)).replace(filter);
+                log.info("Фильтр Блума {}: идентификаторов {}, {} КБ, хеш-функций {}, вероятность ложного "
+                                + "срабатывания {}", table, count, filter.getBitSize() / 8 / 1024,
+                        filter.getHashCount(), filter.estimateFalsePositiveRate());
+            }
+        }
+    }
+
+    /**
+     * Проверяет, существует ли запись с указанным идентификатором.
+     *
+     * @param table Таблица.
+     * @param id    Идентификатор записи.
+     * @return true, если запись существует.
+     */
+    public boolean exists(Table table, long id) {
+        IdSet set = sets.get(table);
+        if (id <= 0) {
+            set.hits.increment();
+            return false;
+        }
+        Boolean cached = set.contains(id);
+        if (cached != null) {
+            set.hits.increment();
+            return cached;
+        }
+        set.misses.increment();
+        boolean found = !jdbc.queryForList(table.probeQuery, Integer.class, id).isEmpty();
+        if (found) {
+            set.add(id);
+        } else {
+            set.falsePositives.increment();
+        }
+        return found;
+    }
+
+    /**
+     * Отмечает запись как существующую. Вызывается после создания записи.
+     *
+     * @param table Таблица.
+     * @param id    Идентификатор созданной записи.
+     */
+    public void register(Table table, long id) {
+        sets.get(table).add(id);
+    }
+
+    /**
+     * Отмечает запись как удаленную. Вызывается после удаления записи.
+     *
+     * @param table Таблица.
+     * @param id    Идентификатор удаленной записи.
+     */
+    public void unregister(Table table, long id) {
+        sets.get(table).remove(id);
+    }
+
+    /**
+     * Возвращает количество проверок, выполненных без обращения к базе данных.
+     *
+     * @param table Таблица.
+     * @return Число попаданий.
+     */
+    public long getHits(Table table) {
+        return sets.get(table).hits.sum();
+    }
+
+    /**
+     * Возвращает количество проверок, для которых потребовался запрос к базе данных.
+     *
+     * @param table Таблица.
+     * @return Число промахов.
+     */
+    public long getMisses(Table table) {
+        return sets.get(table).misses.sum();
+    }
+
+    /**
+     * Возвращает количество запросов к базе данных, не нашедших запись, хотя фильтр Блума допускал
+     * ее наличие. Включает проверки удаленных записей.
+     *
+     * @param table Таблица.
+     * @return Число ложных срабатываний.
+     */
+    public long getFalsePositives(Table table) {
+        return sets.get(table).falsePositives.sum();
+    }
+
+    /**
+     * Оценивает текущую вероятность ложного срабатывания фильтра Блума таблицы.
+     *
+     * @param table Таблица.
+     * @return Оценка вероятности; 0 для таблиц, идентификаторы которых хранятся целиком.
+     */
+    public double estimateFalsePositiveRate(Table table) {
+        return sets.get(table) instanceof CachedIds cached ? cached.filter.estimateFalsePositiveRate() : 0;
+    }
+
+    /**
+     * Возвращает объем памяти, занятый фильтром Блума таблицы.
+     *
+     * @param table Таблица.
+     * @return Размер фильтра в байтах; 0 для таблиц, идентификаторы которых хранятся целиком.
+     */
+    public long getFilterBytes(Table table) {
+        return sets.get(table) instanceof CachedIds cached ? cached.filter.getBitSize() / 8 : 0;
+    }
+
+    private abstract static class IdSet {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder falsePositives = new LongAdder();
+
+        /**
+         * @return true или false, если ответ известен без базы данных, иначе null.
+         */
+        abstract Boolean contains(long id);
+
+        abstract void add(long id);
+
+        abstract void remove(long id);
+    }
+
+    /**
+     * Полный набор идентификаторов в конкурентном множестве. Изменение добавляет или удаляет один элемент,
+     * чтение не блокируется; идентификаторы могут занимать весь диапазон BIGINT.
+     */
+    private static final class AllIds extends IdSet {
+        private volatile Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+        @Override
+        Boolean contains(long id) {
+            return ids.contains(id);
+        }
+
+        @Override
+        void add(long id) {
+            ids.add(id);
+        }
+
+        @Override
+        void remove(long id) {
+            ids.remove(id);
+        }
+
+        void replace(Set<Long> loaded) {
+            ids = loaded;
+        }
+    }
+
+    /**
+     * Ограниченный кэш существующих идентификаторов с вытеснением давно не использованных
+     * и фильтр Блума по всем идентификаторам.
+     */
+    private static final class CachedIds extends IdSet {
+        private final Map<Long, Boolean> ids;
+        private volatile BloomFilter filter;
+
+        CachedIds(int capacity, BloomFilter filter) {
+            this.filter = filter;
+            ids = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                    return size() > capacity;
+                }
+            });
+        }
+
+        @Override
+        Boolean contains(long id) {
+            if (ids.get(id) != null) {
+                return Boolean.TRUE;
+            }
+            return filter.mightContain(id) ? null : Boolean.FALSE;
+        }
+
+        @Override
+        void add(long id) {
+            filter.put(id);
+            ids.put(id, Boolean.TRUE);
+        }
+
+        @Override
+        void remove(long id) {
+            ids.remove(id);
+        }
+
+        void replace(BloomFilter loaded) {
+            filter = loaded;
+            ids.clear();
+        }
+    }
+}
@@ -1,28 +1,48 @@
 package ru.yandex.practicum.filmorate.dal;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Event;
 import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.ReviewCursor;
 import ru.yandex.practicum.filmorate.model.enums.EventTypes;
 import ru.yandex.practicum.filmorate.model.enums.OperationTypes;
+import ru.yandex.practicum.filmorate.storage.ReviewIndex;
+import ru.yandex.practicum.filmorate.storage.ReviewIndex.ReviewStats;
 import ru.yandex.practicum.filmorate.storage.ReviewStorage;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Класс для работы с базой данных отзывов на фильмы.
  * Реализует интерфейс ReviewStorage и предоставляет методы для управления отзывами,
  * включая добавление, обновление, удаление, а также управление лайками и дизлайками.
+ * Порядок отзывов по полезности берется из {@link ReviewIndex}; при
+ * {@code filmorate.review-index.enabled=false} отзывы сортируются запросом к базе данных.
  */
 @Slf4j
 @Repository
 public class ReviewDbStorage extends BaseRepository<Review> implements ReviewStorage {
-    private final HistoryDbStorage historyDbStorage;
+    private final EventJournal eventJournal;
+    private final ReviewUsefulCounters usefulCounters;
+    private final ReviewIndex reviewIndex;
+    private final boolean reviewIndexEnabled;
 
     private static final String LIKE = "like";
     private static final String DISLIKE = "dislike";
@@ -41,6 +61,25 @@ public class ReviewDbStorage extends BaseRepository<Review> implements ReviewSto
             WHERE film_id = ?
             ORDER BY useful DESC
             LIMIT ?""";
+    private static final String FIND_REVIEWS_PAGE_QUERY = """
+            SELECT *
+            FROM reviews
+            WHERE useful < ? OR (useful = ? AND review_id > ?)
+            ORDER BY useful DESC, review_id
+            LIMIT ?""";
+    private static final String FIND_FILM_REVIEWS_PAGE_QUERY = """
+            SELECT *
+            FROM reviews
+            WHERE film_id = ? AND (useful < ? OR (useful = ? AND review_id > ?))
+            ORDER BY useful DESC, review_id
+            LIMIT ?""";
+    private static final String FIND_REVIEWS_BY_IDS_QUERY = "SELECT * FROM reviews WHERE review_id = ANY(?)";
+    private static final String RECOUNT_USEFUL_QUERY = """
+            UPDATE reviews r
+            SET useful = (SELECT COALESCE(SUM(CASE WHEN l.like_or_dislike = 'like' THEN 1 ELSE -1 END), 0)
+                          FROM reviews_users_likes l
+                          WHERE l.review_id = r.review_id)""";
+    private static final String FIND_REVIEW_STATS_QUERY = "SELECT review_id, film_id, user_id, useful FROM reviews";
     private static final String GET_REVIEW_QUERY = "SELECT * FROM reviews WHERE review_id = ?";
     private static final String ADD_REVIEW_QUERY = """
             INSERT INTO reviews (content, is_positive, user_id, film_id, useful)
@@ -50,30 +89,46 @@ public class ReviewDbStorage extends BaseRepository<Review> implements ReviewSto
             UPDATE reviews SET content = ?, is_positive = ?, user_id = ?,
             film_id = ?, useful = ?
             WHERE review_id = ?""";
-    private static final String DELETE_REVIEW_QUERY = "DELETE FROM reviews WHERE review_id = ?";
-    private static final String ADD_LIKE_OR_DISLIKE_IN_REVIEW_QUERY = """
-            INSERT INTO reviews_users_likes (review_id, user_id, like_or_dislike)
-            VALUES (?, ?, ?)
-            """;
-    private static final String DELETE_LIKE_OR_DISLIKE_IN_REVIEW_QUERY = """
-            DELETE FROM reviews_users_likes
-            WHERE review_id = ? AND user_id = ? AND like_or_dislike = ?
-            """;
-    private static final String UPDATE_USEFUL_UP_QUERY = """
-            UPDATE reviews SET useful = useful + 1
-            WHERE review_id = ?""";
-    private static final String UPDATE_USEFUL_DOWN_QUERY = """
-            UPDATE reviews SET useful = useful - 1
+    private static final String UPDATE_REVIEW_CONTENT_QUERY = """
+            UPDATE reviews SET content = ?, is_positive = ?, user_id = ?,
+            film_id = ?
             WHERE review_id = ?""";
-    private static final String FIND_LIKE_OR_DISLIKE_QUERY = """
+    private static final String DELETE_REVIEW_QUERY = "DELETE FROM reviews WHERE review_id = ?";
+    private static final String VOTE_QUERY = """
             SELECT like_or_dislike
-            FROM reviews_users_likes
-            WHERE review_id = ? AND user_id = ?""";
+            FROM OLD TABLE (
+                MERGE INTO reviews_users_likes (review_id, user_id, like_or_dislike)
+                KEY (review_id, user_id)
+                VALUES (?, ?, ?))""";
+    private static final String UNVOTE_QUERY = """
+            SELECT like_or_dislike
+            FROM OLD TABLE (
+                DELETE FROM reviews_users_likes
+                WHERE review_id = ? AND user_id = ? AND like_or_dislike = ?)""";
+    private static final int VOTE_ATTEMPTS = 3;
 
 
-    public ReviewDbStorage(JdbcTemplate jdbc, RowMapper<Review> mapper, HistoryDbStorage historyDbStorage) {
+    public ReviewDbStorage(JdbcTemplate jdbc, RowMapper<Review> mapper, EventJournal eventJournal,
+                           ReviewUsefulCounters usefulCounters, ReviewIndex reviewIndex,
+                           @Value("${filmorate.review-index.enabled:true}") boolean reviewIndexEnabled) {
         super(jdbc, mapper);
-        this.historyDbStorage = historyDbStorage;
+        this.eventJournal = eventJournal;
+        this.usefulCounters = usefulCounters;
+        this.reviewIndex = reviewIndex;
+        this.reviewIndexEnabled = reviewIndexEnabled;
+    }
+
+    /**
+     * Заполняет индекс отзывов данными из базы при старте приложения.
+     * Перед этим полезность отзывов пересчитывается по таблице голосов: изменения, накопленные
+     * в {@link ReviewUsefulCounters} и не записанные до остановки приложения, иначе были бы потеряны.
+     */
+    @PostConstruct
+    public void initReviewIndex() {
+        int recounted = jdbc.update(RECOUNT_USEFUL_QUERY);
+        log.debug("Пересчитана полезность {} отзывов", recounted);
+        reviewIndex.rebuild(jdbc.query(FIND_REVIEW_STATS_QUERY, (rs, rowNum) -> new ReviewStats(
+                rs.getLong("review_id"), rs.getLong("film_id"), rs.getLong("user_id"), rs.getLong("useful"))));
     }
 
     /**
@@ -86,13 +141,15 @@ public class ReviewDbStorage extends BaseRepository<Review> implements ReviewSto
     @Override
     public Review getReview(Long id) {
         log.info("Получение отзыва по ИД {}", id);
-        Optional<Review> optionalReview = findOne(GET_REVIEW_QUERY, id);
+        Optional<Review> optionalReview = usefulCounters.read(() -> findOne(GET_REVIEW_QUERY, id)
+                .map(this::withPendingUseful));
         return optionalReview.orElseThrow(() -> new NotFoundException("Отзыв не найден"));
     }
 
     /**
      * Получает список отзывов для указанного фильма.
-     * Если filmId или count равны null, возвращаются все отзывы или ограниченное количество.
+     * Если filmId равен null, возвращаются все отзывы без учета count; если count равен null,
+     * возвращаются все отзывы фильма.
      *
      * @param filmId идентификатор фильма
      * @param count  количество отзывов, которое необходимо вернуть
@@ -100,16 +157,59 @@ public class ReviewDbStorage extends BaseRepository<Review> implements ReviewSto
      */
     @Override
     public List<Review> getReviewsForFilm(Long filmId, Integer count) {
-        if (filmId == null) {
-            log.info("Получение всех отзывов");
-            return findMany(FIND_ALL_REVIEW_QUERY);
-        } else if (count == null) {
-            log.info("Получение отзывов по ИД фильма {}", filmId);
-            return findMany(FIND_ALL_REVIEW_WITH_ID_QUERY, filmId);
-        } else {
-            log.info("Получение отзывов по ИД фильма {} в колличестве {} шт.", filmId, count);
-            return findMany(FIND_ALL_REVIEW_WITH_COUNT_QUERY, filmId, count);
+        if (reviewIndexEnabled) {
+            log.info("Получение отзывов по ИД фильма {} в колличестве {} шт. из индекса", filmId, count);
+            return findByIds(reviewIndex.top(filmId, filmId == null ? null : count));
         }
+        List<Review> reviews = usefulCounters.read(() -> {
+            List<Review> found;
+            if (filmId == null) {
+                log.info("Получение всех отзывов");
+                found = findMany(FIND_ALL_REVIEW_QUERY);
+            } else if (count == null) {
+                log.info("Получение отзывов по ИД фильма {}", filmId);
+                found = findMany(FIND_ALL_REVIEW_WITH_ID_QUERY, filmId);
+            } else {
+                log.info("Получение отзывов по ИД фильма {} в колличестве {} шт.", filmId, count);
+                found = findMany(FIND_ALL_REVIEW_WITH_COUNT_QUERY, filmId, count);
+            }
+            found.forEach(this::withPendingUseful);
+            return found;
+        });
+        reviews.sort(Comparator.comparing(Review::getUseful).reversed());
+        return reviews;
+    }
+
+    /**
+     * Получает страницу отзывов, упорядоченных по полезности (по убыванию) и идентификатору,
+     * следующих за позицией курсора. При выключенном индексе страница выбирается запросом
+     * по ключу (useful, review_id) с использованием составного индекса без сортировки всей таблицы;
+     * перед запросом накопленные голоса записываются в базу данных, чтобы порядок строк совпадал
+     * с возвращаемой полезностью и ключом курсора.
+     *
+     * @param filmId идентификатор фильма, null - среди всех отзывов
+     * @param after  позиция последнего полученного отзыва, null - с начала списка
+     * @param limit  размер страницы
+     * @return страница отзывов
+     */
+    @Override
+    public List<Review> getReviewsPage(Long filmId, ReviewCursor after, int limit) {
+        log.info("Получение страницы отзывов по ИД фильма {} после {} в колличестве {} шт.", filmId, after, limit);
+        if (reviewIndexEnabled) {
+            return findByIds(after == null
+                    ? reviewIndex.top(filmId, limit)
+                    : reviewIndex.after(filmId, after.useful(), after.reviewId(), limit));
+        }
+        long useful = after == null ? Long.MAX_VALUE : after.useful();
+        long reviewId = after == null ? 0 : after.reviewId();
+        usefulCounters.flush();
+        return usefulCounters.read(() -> {
+            List<Review> found = filmId == null
+                    ? findMany(FIND_REVIEWS_PAGE_QUERY, useful, useful, reviewId, limit)
+                    : findMany(FIND_FILM_REVIEWS_PAGE_QUERY, filmId, useful, useful, reviewId, limit);
+            found.forEach(this::withPendingUseful);
+            return found;
+        });
     }
 
     /**
@@ -132,6 +232,7 @@ public class ReviewDbStorage extends BaseRepository<Review> implements ReviewSto
                 review.getUseful()
         );
         review.setReviewId(id);
+        reviewIndex.putReview(toStats(review));
         log.info("Отзыв добавлен: {}", review);
         saveHistory(review.getReviewId(), review.getUserId(), OperationTypes.ADD);
         return review;
@@ -139,7 +240,8 @@ public class ReviewDbStorage extends BaseRepository<Review> implements ReviewSto
 
     /**
      * Обновляет существующий отзыв в базе данных.
-     * Если поле полезности не установлено, используется текущее значение.
+     * Если поле полезности не установлено, полезность не изменяется, иначе задается целиком
+     * и еще не записанные голоса за отзыв отбрасываются.
      *
      * @param review объект Review, содержащий обновленные данные
      * @return обновленный объект Review
@@ -149,16 +251,26 @@ public class ReviewDbStorage extends BaseRepository<Review> implements ReviewSto
     public Review updateReview(Review review) {
         log.info("Обновление отзыва: {}", review);
         if (review.getUseful() == null) {
+            update(UPDATE_REVIEW_CONTENT_QUERY,
+                    review.getContent(),
+                    review.getIsPositive(),
+                    review.getUserId(),
+                    review.getFilmId(),
+                    review.getReviewId()
+            );
             review.setUseful(getReview(review.getReviewId()).getUseful());
+            reviewIndex.moveReview(review.getReviewId(), review.getFilmId(), review.getUserId());
+        } else {
+            usefulCounters.overwrite(review.getReviewId(), () -> update(UPDATE_REVIEW_QUERY,
+                    review.getContent(),
+                    review.getIsPositive(),
+                    review.getUserId(),
+                    review.getFilmId(),
+                    review.getUseful(),
+                    review.getReviewId()
+            ));
+            reviewIndex.putReview(toStats(review));
         }
-        update(UPDATE_REVIEW_QUERY,
-                review.getContent(),
-                review.getIsPositive(),
-                review.getUserId(),
-                review.getFilmId(),
-                review.getUseful(),
-                review.getReviewId()
-        );
         log.info("Отзыв обновлён: {}", review);
         saveHistory(review.getReviewId(), review.getUserId(), OperationTypes.UPDATE);
         return review;
@@ -175,74 +287,67 @@ public class ReviewDbStorage extends BaseRepository<Review> implements ReviewSto
     public void deleteReview(Long id) {
         log.info("Удаление отзыва: {}", id);
         saveHistory(id, getReview(id).getUserId(), OperationTypes.REMOVE);
-        delete(DELETE_REVIEW_QUERY, id);
+        usefulCounters.overwrite(id, () -> delete(DELETE_REVIEW_QUERY, id));
+        reviewIndex.removeReview(id);
         log.info("Отзыв удален: {}", id);
     }
 
     /**
-     * Добавляет лайк на отзыв.
-     * Если у пользователя уже есть дизлайк, он удаляется.
-     * Увеличивает значение полезности отзыва.
+     * Ставит лайк отзыву. Если у пользователя стоял дизлайк, он заменяется лайком.
+     * Повторный лайк ничего не меняет.
      *
      * @param reviewId идентификатор отзыва
      * @param userId   идентификатор пользователя
      */
     @Override
+    @Transactional
     public void addLikeInReview(Long reviewId, Long userId) {
-        if (isLikeOrDislike(reviewId, userId)) {
-            deleteDislikeInReview(reviewId, userId);
-        }
         log.info("Добавление лайка на ИД отзыва: {}", reviewId);
-        insert(ADD_LIKE_OR_DISLIKE_IN_REVIEW_QUERY, reviewId, userId, LIKE);
+        changeUseful(reviewId, vote(reviewId, userId, LIKE));
         log.info("Лайк добавлен на ИД отзыва: {}", reviewId);
-        increaseToUseful(reviewId);
     }
 
     /**
-     * Добавляет дизлайк на отзыв.
-     * Если у пользователя уже есть лайк, он удаляется.
-     * Уменьшает значение полезности отзыва.
+     * Ставит дизлайк отзыву. Если у пользователя стоял лайк, он заменяется дизлайком.
+     * Повторный дизлайк ничего не меняет.
      *
      * @param reviewId идентификатор отзыва
      * @param userId   идентификатор пользователя
      */
     @Override
+    @Transactional
     public void addDislikeInReview(Long reviewId, Long userId) {
-        if (isLikeOrDislike(reviewId, userId)) {
-            deleteLikeInReview(reviewId, userId);
-        }
         log.info("Добавление дислайка на ИД отзыва: {}", reviewId);
-        insert(ADD_LIKE_OR_DISLIKE_IN_REVIEW_QUERY, reviewId, userId, DISLIKE);
+        changeUseful(reviewId, vote(reviewId, userId, DISLIKE));
         log.info("Дислайк добавлен на ИД отзыва: {}", reviewId);
-        downgradeToUseful(reviewId);
     }
 
     /**
-     * Удаляет лайк с отзыва и понижает значение полезности.
+     * Удаляет лайк с отзыва, если он был поставлен пользователем.
      *
      * @param reviewId идентификатор отзыва
      * @param userId   идентификатор пользователя
      */
     @Override
+    @Transactional
     public void deleteLikeInReview(Long reviewId, Long userId) {
         log.info("Удаление лайка отзыва с ИД: {}", reviewId);
-        deleteByTwoIdsAndLike(DELETE_LIKE_OR_DISLIKE_IN_REVIEW_QUERY, reviewId, userId, LIKE);
+        changeUseful(reviewId, unvote(reviewId, userId, LIKE));
         log.info("Лайк удалён с отзыва ИД: {}", reviewId);
-        downgradeToUseful(reviewId);
     }
 
     /**
-     * Удаляет дизлайк с отзыва и повышает значение полезности.
+     * Удаляет дизлайк с отзыва, если он был поставлен пользователем.
      *
      * @param reviewId идентификатор отзыва
      * @param userId   идентификатор пользователя
      */
     @Override
+    @Transactional
     public void deleteDislikeInReview(Long reviewId, Long userId) {
         log.info("Удаление дислайка отзыва с ИД: {}", reviewId);
-        deleteByTwoIdsAndLike(DELETE_LIKE_OR_DISLIKE_IN_REVIEW_QUERY, reviewId, userId, DISLIKE);
+        changeUseful(reviewId, unvote(reviewId, userId, DISLIKE));
         log.info("Дислайк удалён с отзыва ИД: {}", reviewId);
-        increaseToUseful(reviewId);
     }
 
     /**
@@ -253,7 +358,7 @@ public class ReviewDbStorage extends BaseRepository<Review> implements ReviewSto
      * @param operationTypes тип операции (добавление, обновление, удаление)
      */
     private void saveHistory(Long id, Long userId, OperationTypes operationTypes) {
-        historyDbStorage.addEvent(Event.builder()
+        eventJournal.append(Event.builder()
                 .userId(userId)
                 .timestamp(System.currentTimeMillis())
                 .eventType(EventTypes.REVIEW)
@@ -263,34 +368,108 @@ public class ReviewDbStorage extends BaseRepository<Review> implements ReviewSto
     }
 
     /**
-     * Повышает полезность отзыва (увеличивает значение useful).
+     * Записывает голос пользователя одним запросом MERGE и возвращает изменение полезности отзыва.
+     * Предыдущий голос читается из того же запроса, поэтому одновременные голоса одного пользователя
+     * не приводят к двойному учету. Если строка голоса одновременно вставлена другим запросом,
+     * запрос повторяется.
      *
-     * @param reviewId идентификатор отзыва, полезность которого необходимо повысить
+     * @param reviewId идентификатор отзыва
+     * @param userId   идентификатор пользователя
+     * @param vote     голос: лайк или дизлайк
+     * @return изменение полезности отзыва
      */
-    private void increaseToUseful(Long reviewId) {
-        log.info("Повышение рейтинга полезности отзыва");
-        update(UPDATE_USEFUL_UP_QUERY, reviewId);
+    private int vote(long reviewId, long userId, String vote) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Optional<String> previous = findOneInstances(VOTE_QUERY, reviewId, userId, vote);
+                return weight(vote) - previous.map(ReviewDbStorage::weight).orElse(0);
+            } catch (DuplicateKeyException e) {
+                if (attempt == VOTE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
     }
 
     /**
-     * Понижает полезность отзыва (уменьшает значение useful).
+     * Удаляет голос пользователя одним запросом и возвращает изменение полезности отзыва.
      *
-     * @param reviewId идентификатор отзыва, полезность которого необходимо понизить
+     * @param reviewId идентификатор отзыва
+     * @param userId   идентификатор пользователя
+     * @param vote     удаляемый голос: лайк или дизлайк
+     * @return изменение полезности отзыва, 0 если такого голоса не было
      */
-    private void downgradeToUseful(Long reviewId) {
-        log.info("Понижение рейтинга полезности отзыва");
-        update(UPDATE_USEFUL_DOWN_QUERY, reviewId);
+    private int unvote(long reviewId, long userId, String vote) {
+        return -findOneInstances(UNVOTE_QUERY, reviewId, userId, vote).map(ReviewDbStorage::weight).orElse(0);
     }
 
     /**
-     * Проверяет, существует ли лайк или дизлайк на отзыв от конкретного пользователя.
+     * Изменяет полезность отзыва на указанную величину. Изменение накапливается
+     * в {@link ReviewUsefulCounters} и записывается в базу данных пакетом.
+     * Внутри транзакции изменение учитывается только после ее фиксации, чтобы откат голоса
+     * не оставлял изменение полезности в счетчике и индексе.
      *
      * @param reviewId идентификатор отзыва
-     * @param userId   идентификатор пользователя
-     * @return true, если лайк или дизлайк существует, иначе false
+     * @param delta    изменение полезности
      */
-    private boolean isLikeOrDislike(Long reviewId, Long userId) {
-        Optional<String> like = findOneInstances(FIND_LIKE_OR_DISLIKE_QUERY, reviewId, userId);
-        return like.isPresent();
+    private void changeUseful(long reviewId, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            applyUseful(reviewId, delta);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                applyUseful(reviewId, delta);
+            }
+        });
+    }
+
+    private void applyUseful(long reviewId, int delta) {
+        log.info("Изменение рейтинга полезности отзыва на {}", delta);
+        usefulCounters.add(reviewId, delta);
+        reviewIndex.addUseful(reviewId, delta);
+    }
+
+    /**
+     * Загружает отзывы по идентификаторам с учетом еще не записанных голосов.
+     *
+     * @param ids идентификаторы отзывов
+     * @return отзывы в порядке переданных идентификаторов
+     */
+    private List<Review> findByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Review> reviews = usefulCounters.read(() ->
+                findMany(FIND_REVIEWS_BY_IDS_QUERY, (Object) ids.toArray(new Long[0])).stream()
+                        .map(this::withPendingUseful)
+                        .collect(Collectors.toMap(Review::getReviewId, Function.identity())));
+        return ids.stream()
+                .map(reviews::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private static ReviewStats toStats(Review review) {
+        return new ReviewStats(review.getReviewId(), review.getFilmId(), review.getUserId(), review.getUseful());
+    }
+
+    /**
+     * Добавляет к полезности отзыва еще не записанное в базу данных изменение.
+     *
+     * @param review отзыв, прочитанный из базы данных
+     * @return тот же отзыв
+     */
+    private Review withPendingUseful(Review review) {
+        review.setUseful(Math.toIntExact(review.getUseful() + usefulCounters.getPending(review.getReviewId())));
+        return review;
+    }
+
+    private static int weight(String vote) {
+        return LIKE.equals(vote) ? 1 : -1;
     }
 }
@@ -0,0 +1,189 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Накопитель изменений полезности отзывов.
+ * <p>
+ * Голоса за отзыв не обновляют строку REVIEWS сразу: изменение полезности добавляется в счетчик
+ * {@link LongAdder} отзыва, который не блокирует одновременно голосующие потоки. Фоновый поток раз
+ * в {@code filmorate.review-useful.flush-interval-ms} миллисекунд записывает накопленные изменения
+ * всех отзывов одним пакетом UPDATE, поэтому серия голосов за популярный отзыв превращается
+ * в одно обновление строки.
+ * </p>
+ * <p>
+ * Чтение отзывов выполняется через {@link #read(Supplier)} и добавляет к значению из базы данных
+ * еще не записанное изменение. Запись пакета и чтение разделены блокировкой, поэтому читатель видит
+ * изменение ровно один раз - либо в базе данных, либо в счетчике.
+ * </p>
+ * <p>
+ * Голоса добавляются под блокировкой чтения, поэтому не мешают друг другу, но не пересекаются с записью
+ * пакета. Это позволяет после записи удалять обнуленные счетчики, не теряя голосов, и размер накопителя
+ * определяется числом отзывов с голосами за последний интервал, а не за все время работы.
+ * </p>
+ */
+@Slf4j
+@Component
+public class ReviewUsefulCounters {
+
+    private static final String UPDATE_USEFUL_QUERY = "UPDATE reviews SET useful = useful + ? WHERE review_id = ?";
+
+    private final JdbcTemplate jdbc;
+    private final ConcurrentMap<Long, LongAdder> pending = new ConcurrentHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService flusher;
+    private final long flushIntervalMs;
+
+    public ReviewUsefulCounters(JdbcTemplate jdbc,
+                                @Value("${filmorate.review-useful.flush-interval-ms:100}") long flushIntervalMs) {
+        this.jdbc = jdbc;
+        this.flushIntervalMs = flushIntervalMs;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "review-useful-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Запускает фоновую запись накопленных изменений.
+     */
+    @PostConstruct
+    public void start() {
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Добавляет изменение полезности отзыва.
+     *
+     * @param reviewId Идентификатор отзыва.
+     * @param delta    Изменение полезности.
+     */
+    public void add(long reviewId, long delta) {
+        lock.readLock().lock();
+        try {
+            pending.computeIfAbsent(reviewId, id -> new LongAdder()).add(delta);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает еще не записанное изменение полезности отзыва.
+     * Вызывается внутри {@link #read(Supplier)}.
+     *
+     * @param reviewId Идентификатор отзыва.
+     * @return Накопленное изменение.
+     */
+    public long getPending(long reviewId) {
+        LongAdder adder = pending.get(reviewId);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * Возвращает количество отзывов, для которых хранятся счетчики незаписанных изменений.
+     *
+     * @return Количество счетчиков.
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Выполняет чтение отзывов так, чтобы в это время накопленные изменения не записывались в базу данных.
+     *
+     * @param reader Чтение из базы данных.
+     * @param <T>    Тип результата.
+     * @return Результат чтения.
+     */
+    public <T> T read(Supplier<T> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Отбрасывает накопленное изменение полезности отзыва и выполняет запись, задающую полезность
+     * целиком, например обновление или удаление отзыва.
+     *
+     * @param reviewId Идентификатор отзыва.
+     * @param writer   Запись в базу данных.
+     */
+    public void overwrite(long reviewId, Runnable writer) {
+        lock.writeLock().lock();
+        try {
+            pending.remove(reviewId);
+            writer.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Записывает накопленные изменения полезности всех отзывов одним пакетом.
+     */
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            List<Object[]> batch = new ArrayList<>();
+            pending.forEach((reviewId, adder) -> {
+                long delta = adder.sum();
+                if (delta != 0) {
+                    batch.add(new Object[]{delta, reviewId});
+                }
+            });
+            if (!batch.isEmpty()) {
+                jdbc.batchUpdate(UPDATE_USEFUL_QUERY, batch);
+            }
+            pending.clear();
+            if (batch.isEmpty()) {
+                return;
+            }
+            log.debug("Записаны изменения полезности {} отзывов", batch.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Останавливает фоновую запись и записывает оставшиеся изменения.
+     */
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Не удалось записать изменения полезности отзывов", e);
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.enums.EventTypes;
+import ru.yandex.practicum.filmorate.model.enums.OperationTypes;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал событий в сегментированных файлах, отображенных в память.
+ * <p>
+ * События только добавляются. Каждое событие записывается в текущий сегмент записью фиксированной
+ * длины {@value #RECORD_SIZE} байт: идентификатор события, идентификатор пользователя, время действия
+ * в виде смещения от базового времени сегмента, тип, операция, идентификатор сущности и контрольная
+ * сумма CRC32. Базовое время хранится в заголовке сегмента. Когда сегмент заполнен или смещение времени
+ * не помещается в четыре байта, создается следующий сегмент.
+ * </p>
+ * <p>
+ * Для каждого пользователя в памяти хранится индекс: идентификаторы его событий по возрастанию и позиции
+ * записей в сегментах. Поэтому чтение истории пользователя не просматривает чужие события. После каждого
+ * пакета записанные страницы сбрасываются на диск. Заполненный сегмент сбрасывается до создания следующего,
+ * поэтому недописанным может оказаться только последний сегмент. При открытии журнала сегменты
+ * просматриваются, индекс строится заново, а хвост последнего сегмента, начиная с первой записи
+ * с неверной контрольной суммой, обнуляется.
+ * </p>
+ * <p>
+ * Журнал может быть привязан к поколению базы данных: поколение хранится в файле {@value #GENERATION_FILE}
+ * рядом с сегментами, и если при открытии оно отличается от переданного, сегменты удаляются. Так история
+ * не переживает пересоздание таблиц, с которыми связаны идентификаторы пользователей и сущностей.
+ * </p>
+ */
+@Slf4j
+public class SegmentedEventLog implements Closeable {
+
+    static final int RECORD_SIZE = 34;
+    private static final int MAGIC = 0x46455654;
+    private static final int HEADER_SIZE = 16;
+    private static final int CHECKSUM_OFFSET = RECORD_SIZE - Integer.BYTES;
+    private static final String SEGMENT_PREFIX = "events-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String GENERATION_FILE = "generation";
+
+    private final Path directory;
+    private final int segmentRecords;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final Map<Long, UserPostings> postingsByUser = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final CRC32 checksum = new CRC32();
+    private long maxEventId;
+
+    /**
+     * Открывает журнал в указанном каталоге и восстанавливает индекс по существующим сегментам.
+     *
+     * @param directory      Каталог сегментов.
+     * @param segmentRecords Количество записей в одном сегменте.
+     */
+    public SegmentedEventLog(Path directory, int segmentRecords) {
+        this(directory, segmentRecords, null);
+    }
+
+    /**
+     * Открывает журнал в указанном каталоге для указанного поколения базы данных. Если сегменты
+     * записаны для другого поколения, они удаляются, и журнал открывается пустым.
+     *
+     * @param directory      Каталог сегментов.
+     * @param segmentRecords Количество записей в одном сегменте.
+     * @param generation     Поколение базы данных, null - без проверки поколения.
+     */
+    public SegmentedEventLog(Path directory, int segmentRecords, String generation) {
+        this.directory = directory;
+        this.segmentRecords = segmentRecords;
+        try {
+            Files.createDirectories(directory);
+            if (generation != null) {
+                resetIfStale(generation);
+            }
+            List<Path> files = listSegments();
+            for (int i = 0; i < files.size(); i++) {
+                recover(openSegment(files.get(i), i), i == files.size() - 1);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть журнал событий в " + directory, e);
+        }
+        log.info("Журнал событий открыт: {}, сегментов: {}, последнее событие: {}", directory, segments.size(),
+                maxEventId);
+    }
+
+    /**
+     * Возвращает наибольший идентификатор записанного события.
+     *
+     * @return Идентификатор последнего события или 0, если журнал пуст.
+     */
+    public long getMaxEventId() {
+        lock.readLock().lock();
+        try {
+            return maxEventId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет события в журнал и сбрасывает их на диск.
+     * События с идентификатором не больше уже записанного пропускаются, поэтому пакет, запись которого
+     * прервалась, можно записать повторно.
+     *
+     * @param events События с присвоенными идентификаторами в порядке возрастания идентификатора.
+     */
+    public void append(List<Event> events) {
+        lock.writeLock().lock();
+        try {
+            Segment segment = null;
+            for (Event event : events) {
+                if (event.getEventId() <= maxEventId) {
+                    continue;
+                }
+                segment = writableSegment(event.getTimestamp());
+                int slot = segment.count;
+                write(segment, slot, event);
+                segment.count++;
+                index(event.getUserId(), event.getEventId(), position(segment.number, slot));
+            }
+            if (segment != null) {
+                segment.buffer.force();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать события в журнал", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает все события пользователя.
+     *
+     * @param userId Идентификатор пользователя.
+     * @return События в порядке возрастания идентификатора.
+     */
+    public List<Event> getEventsByUser(long userId) {
+        List<Event> events = new ArrayList<>();
+        forEachEventByUser(userId, 0, events::add);
+        return events;
+    }
+
+    /**
+     * Возвращает не более limit последних событий пользователя с идентификатором меньше before.
+     *
+     * @param userId Идентификатор пользователя.
+     * @param before Идентификатор события, до которого выбираются события (не включительно).
+     * @param limit  Максимальное количество событий.
+     * @return События в порядке возрастания идентификатора.
+     */
+    public List<Event> getEventsPage(long userId, long before, int limit) {
+        long[] positions;
+        lock.readLock().lock();
+        try {
+            UserPostings postings = postingsByUser.get(userId);
+            if (postings == null) {
+                return new ArrayList<>();
+            }
+            int end = postings.lowerBound(before);
+            positions = Arrays.copyOfRange(postings.positions, Math.max(0, end - limit), end);
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Event> events = new ArrayList<>(positions.length);
+        for (long position : positions) {
+            events.add(read(position));
+        }
+        return events;
+    }
+
+    /**
+     * Возвращает не более limit событий пользователя с идентификатором больше after.
+     *
+     * @param userId Идентификатор пользователя.
+     * @param after  Идентификатор события, после которого выбираются события (не включительно).
+     * @param limit  Максимальное количество событий.
+     * @return События в порядке возрастания идентификатора.
+     */
+    public List<Event> getEventsAfter(long userId, long after, int limit) {
+        long[] positions;
+        lock.readLock().lock();
+        try {
+            UserPostings postings = postingsByUser.get(userId);
+            if (postings == null) {
+                return new ArrayList<>();
+            }
+            int start = after == Long.MAX_VALUE ? postings.size : postings.lowerBound(after + 1);
+            positions = Arrays.copyOfRange(postings.positions, start, start + Math.min(limit, postings.size - start));
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Event> events = new ArrayList<>(positions.length);
+        for (long position : positions) {
+            events.add(read(position));
+        }
+        return events;
+    }
+
+    /**
+     * Передает в обработчик события пользователя, следующие за указанным.
+     *
+     * @param userId Идентификатор пользователя.
+     * @param after  Идентификатор события, после которого выбираются события (не включительно).
+     * @param action Обработчик, вызываемый для каждого события в порядке возрастания идентификатора.
+     */
+    public void forEachEventByUser(long userId, long after, Consumer<Event> action) {
+        long[] positions;
+        lock.readLock().lock();
+        try {
+            UserPostings postings = postingsByUser.get(userId);
+            if (postings == null) {
+                return;
+            }
+            int start = after == Long.MAX_VALUE ? postings.size : postings.lowerBound(after + 1);
+            positions = Arrays.copyOfRange(postings.positions, start, postings.size);
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (long position : positions) {
+            action.accept(read(position));
+        }
+    }
+
+    /**
+     * Передает в обработчик все события журнала в порядке записи.
+     *
+     * @param action Обработчик событий.
+     */
+    public void forEachEvent(Consumer<Event> action) {
+        int[] counts;
+        lock.readLock().lock();
+        try {
+            counts = segments.stream().mapToInt(segment -> segment.count).toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int number = 0; number < counts.length; number++) {
+            for (int slot = 0; slot < counts[number]; slot++) {
+                action.accept(read(position(number, slot)));
+            }
+        }
+    }
+
+    /**
+     * Сбрасывает сегменты на диск и закрывает файлы.
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments) {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось закрыть журнал событий", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> list = Files.list(directory)) {
+            return list.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Удаляет сегменты, если они записаны для другого поколения базы данных, и запоминает текущее поколение.
+     * Маркер записывается после удаления сегментов, поэтому прерванная очистка повторится при следующем открытии.
+     */
+    private void resetIfStale(String generation) throws IOException {
+        Path marker = directory.resolve(GENERATION_FILE);
+        if (Files.exists(marker) && generation.equals(Files.readString(marker).trim())) {
+            return;
+        }
+        List<Path> stale = listSegments();
+        for (Path segment : stale) {
+            Files.delete(segment);
+        }
+        if (!stale.isEmpty()) {
+            log.warn("Журнал событий {}: база данных пересоздана, удалено сегментов: {}", directory, stale.size());
+        }
+        Files.writeString(marker, generation);
+    }
+
+    private Segment writableSegment(long timestamp) throws IOException {
+        Segment segment = segments.isEmpty() ? null : segments.getLast();
+        if (segment != null && segment.baseTimestamp == Long.MIN_VALUE) {
+            writeHeader(segment, timestamp);
+        }
+        if (segment == null || segment.count == segment.capacity || !fitsDelta(segment, timestamp)) {
+            if (segment != null) {
+                segment.buffer.force();
+            }
+            Path path = directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, segments.size(), SEGMENT_SUFFIX));
+            segment = openSegment(path, segments.size());
+            writeHeader(segment, timestamp);
+        }
+        return segment;
+    }
+
+    private Segment openSegment(Path path, int number) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), HEADER_SIZE + (long) segmentRecords * RECORD_SIZE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        Segment segment = new Segment(number, channel, buffer, (int) ((size - HEADER_SIZE) / RECORD_SIZE));
+        segments.add(segment);
+        return segment;
+    }
+
+    private void recover(Segment segment, boolean last) {
+        if (segment.buffer.getInt(0) != MAGIC) {
+            return;
+        }
+        segment.baseTimestamp = segment.buffer.getLong(8);
+        int slot = 0;
+        while (slot < segment.capacity && segment.buffer.getLong(offset(slot)) != 0 && isValid(segment, slot)) {
+            long eventId = segment.buffer.getLong(offset(slot));
+            index(segment.buffer.getLong(offset(slot) + 8), eventId, position(segment.number, slot));
+            slot++;
+        }
+        segment.count = slot;
+        if (slot < segment.capacity && segment.buffer.getLong(offset(slot)) != 0) {
+            log.warn("Журнал событий {}: поврежденная запись {} сегмента {} отброшена", directory, slot,
+                    segment.number);
+        }
+        if (last && slot < segment.capacity) {
+            for (int i = offset(slot); i < segment.buffer.capacity(); i++) {
+                segment.buffer.put(i, (byte) 0);
+            }
+            segment.buffer.force();
+        }
+    }
+
+    private void writeHeader(Segment segment, long baseTimestamp) {
+        segment.buffer.putInt(4, RECORD_SIZE);
+        segment.buffer.putLong(8, baseTimestamp);
+        segment.buffer.putInt(0, MAGIC);
+        segment.baseTimestamp = baseTimestamp;
+    }
+
+    private void write(Segment segment, int slot, Event event) {
+        int offset = offset(slot);
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.putLong(offset, event.getEventId());
+        buffer.putLong(offset + 8, event.getUserId());
+        buffer.putInt(offset + 16, (int) (event.getTimestamp() - segment.baseTimestamp));
+        buffer.put(offset + 20, (byte) event.getEventType().ordinal());
+        buffer.put(offset + 21, (byte) event.getOperation().ordinal());
+        buffer.putLong(offset + 22, event.getEntityId());
+        buffer.putInt(offset + CHECKSUM_OFFSET, checksum(buffer, offset));
+    }
+
+    private Event read(long position) {
+        Segment segment = segments.get((int) (position >>> 32));
+        int offset = offset((int) position);
+        MappedByteBuffer buffer = segment.buffer;
+        return Event.builder()
+                .eventId(buffer.getLong(offset))
+                .userId(buffer.getLong(offset + 8))
+                .timestamp(segment.baseTimestamp + buffer.getInt(offset + 16))
+                .eventType(EventTypes.values()[buffer.get(offset + 20)])
+                .operation(OperationTypes.values()[buffer.get(offset + 21)])
+                .entityId(buffer.getLong(offset + 22))
+                .build();
+    }
+
+    private boolean isValid(Segment segment, int slot) {
+        int offset = offset(slot);
+        return segment.buffer.getInt(offset + CHECKSUM_OFFSET) == checksum(segment.buffer, offset);
+    }
+
+    private int checksum(MappedByteBuffer buffer, int offset) {
+        synchronized (checksum) {
+            checksum.reset();
+            checksum.update(buffer.slice(offset, CHECKSUM_OFFSET));
+            return (int) checksum.getValue();
+        }
+    }
+
+    private void index(long userId, long eventId, long position) {
+        postingsByUser.computeIfAbsent(userId, id -> new UserPostings()).add(eventId, position);
+        maxEventId = Math.max(maxEventId, eventId);
+    }
+
+    private static boolean fitsDelta(Segment segment, long timestamp) {
+        long delta = timestamp - segment.baseTimestamp;
+        return delta >= Integer.MIN_VALUE && delta <= Integer.MAX_VALUE;
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    private static long position(int segmentNumber, int slot) {
+        return ((long) segmentNumber << 32) | slot;
+    }
+
+    /**
+     * Сегмент журнала - файл, целиком отображенный в память.
+     */
+    private static final class Segment {
+
+        private final int number;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private long baseTimestamp = Long.MIN_VALUE;
+        private int count;
+
+        private Segment(int number, FileChannel channel, MappedByteBuffer buffer, int capacity) {
+            this.number = number;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.capacity = capacity;
+        }
+    }
+
+    /**
+     * Идентификаторы событий пользователя по возрастанию и позиции их записей.
+     */
+    private static final class UserPostings {
+
+        private long[] eventIds = new long[4];
+        private long[] positions = new long[4];
+        private int size;
+
+        void add(long eventId, long position) {
+            if (size == eventIds.length) {
+                eventIds = Arrays.copyOf(eventIds, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            int index = size;
+            while (index > 0 && eventIds[index - 1] > eventId) {
+                eventIds[index] = eventIds[index - 1];
+                positions[index] = positions[index - 1];
+                index--;
+            }
+            eventIds[index] = eventId;
+            positions[index] = position;
+            size++;
+        }
+
+        int lowerBound(long eventId) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (eventIds[middle] < eventId) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -2,16 +2,15 @@ package ru.yandex.practicum.filmorate.dal;
 
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Optional;
-import java.util.Set;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
@@ -24,18 +23,23 @@ public class UserDbStorage extends BaseRepository<User> implements UserStorage {
     // SQL-запросы
     private static final String FIND_BY_ID_QUERY = "SELECT * FROM USERS WHERE USER_ID = ?";
     private static final String FIND_ALL_QUERY = "SELECT * FROM USERS";
+    private static final String FIND_PAGE_QUERY = "SELECT * FROM USERS WHERE USER_ID > ? ORDER BY USER_ID LIMIT ?";
     private static final String INSERT_QUERY = "INSERT INTO USERS(USER_NAME, EMAIL, LOGIN, BIRTHDAY)" +
             "VALUES (?,?,?,?)";
     private static final String UPDATE_QUERY = "UPDATE USERS SET USER_NAME = ?, EMAIL = ?, LOGIN = ?, BIRTHDAY = ? " +
             "WHERE USER_ID = ?";
-    private static final String FIND_FRIENDS_BY_ID = "SELECT FRIEND_ID AS USER_ID, EMAIL, LOGIN, USER_NAME, BIRTHDAY " +
-            "FROM FRIENDSHIP INNER JOIN USERS ON FRIENDSHIP.FRIEND_ID = USERS.USER_ID WHERE FRIENDSHIP.USER_ID = ?";
-    private static final String FIND_FRIENDS_IDS = "SELECT FRIEND_ID FROM FRIENDSHIP WHERE USER_ID = ?";
+    private static final String FIND_BY_IDS_QUERY = "SELECT * FROM USERS WHERE USER_ID = ANY(?)";
+    private static final String FIND_ALL_FRIENDSHIPS_QUERY = "SELECT USER_ID, FRIEND_ID FROM FRIENDSHIP";
+    private static final String FIND_FRIENDS_BY_USER_IDS_QUERY = "SELECT USER_ID, FRIEND_ID FROM FRIENDSHIP " +
+            "WHERE USER_ID = ANY(?) ORDER BY USER_ID";
     private static final String INSERT_FRIEND_QUERY = "INSERT INTO FRIENDSHIP (USER_ID, FRIEND_ID) VALUES (?, ?)";
     private static final String DELETE_FRIEND_QUERY = "DELETE FROM FRIENDSHIP WHERE USER_ID = ? AND FRIEND_ID = ?";
     private static final String DELETE_USER_QUERY = "DELETE FROM USERS WHERE USER_ID = ?";
     private static final String DELETE_USER_FRIEND_QUERY = "DELETE FROM FRIENDSHIP WHERE USER_ID = ? OR FRIEND_ID = ?";
+    private static final String FIND_LIKED_FILM_IDS_QUERY = "SELECT FILM_ID FROM LIKES WHERE USER_ID = ?";
     private static final String DELETE_USER_LIKE_QUERY = "DELETE FROM LIKES WHERE USER_ID = ?";
+    private static final String DECREASE_LIKE_COUNT_BY_USER_QUERY = "UPDATE FILMS SET LIKE_COUNT = LIKE_COUNT - 1 " +
+            "WHERE FILM_ID IN (SELECT FILM_ID FROM LIKES WHERE USER_ID = ?)";
     private static final String DELETE_USER_REVIEW_QUERY = "DELETE FROM REVIEWS WHERE USER_ID = ?";
 
     /**
@@ -56,9 +60,20 @@ public class UserDbStorage extends BaseRepository<User> implements UserStorage {
     @Override
     public List<User> getAll() {
         List<User> users = findMany(FIND_ALL_QUERY);
-        for (User user : users) {
-            user.setFriends(getFriendsSet(user.getId()));
-        }
+        hydrateFriends(users);
+        return users;
+    }
+
+    /**
+     * Получает страницу пользователей, упорядоченных по идентификатору (keyset-пагинация).
+     *
+     * @param after Идентификатор, после которого начинается страница.
+     * @param limit Максимальное количество пользователей на странице.
+     * @return Список пользователей с идентификаторами больше after, не длиннее limit.
+     */
+    public List<User> getPage(long after, int limit) {
+        List<User> users = findMany(FIND_PAGE_QUERY, after, limit);
+        hydrateFriends(users);
         return users;
     }
 
@@ -100,7 +115,7 @@ public class UserDbStorage extends BaseRepository<User> implements UserStorage {
                 updatedUser.getBirthday(),
                 updatedUser.getId()
         );
-        updatedUser.setFriends(getFriendsSet(updatedUser.getId()));
+        hydrateFriends(List.of(updatedUser));
 
         return updatedUser;
     }
@@ -116,22 +131,6 @@ public class UserDbStorage extends BaseRepository<User> implements UserStorage {
         insert(INSERT_FRIEND_QUERY, userId, friendId);
     }
 
-    /**
-     * Получает список друзей пользователя.
-     *
-     * @param id Идентификатор пользователя.
-     * @return Список друзей пользователя.
-     * @throws NotFoundException Если пользователь не найден.
-     */
-    public List<User> getUserFriends(Long id) {
-        List<User> friends = findMany(FIND_FRIENDS_BY_ID, id);
-        for (User friend : friends) {
-            friend.setFriends(getFriendsSet(friend.getId()));
-        }
-        return friends;
-
-    }
-
     /**
      * Удаляет пользователя из друзей.
      *
@@ -163,42 +162,88 @@ public class UserDbStorage extends BaseRepository<User> implements UserStorage {
      */
     public User getUserById(Long id) {
         User user = findById(id).orElseThrow(() -> new NotFoundException("Пользователь с id " + id + " не найден"));
-        user.setFriends(getFriendsSet(id));
+        hydrateFriends(List.of(user));
         return user;
     }
 
     /**
-     * Получает список общих друзей между двумя пользователями.
+     * Получает пользователей по списку идентификаторов.
      *
-     * @param userId  Идентификатор первого пользователя.
-     * @param otherId Идентификатор второго пользователя.
-     * @return Список общих друзей.
+     * @param ids Идентификаторы пользователей.
+     * @return Пользователи в порядке следования идентификаторов; несуществующие идентификаторы пропускаются.
      */
-    public List<User> getCommonFriends(Long userId, Long otherId) {
-        Set<Long> userFriendsSet = getUserById(userId).getFriends();
-        Set<Long> otherUserFriendsSet = getUserById(otherId).getFriends();
+    public List<User> findByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, User> usersById = findMany(FIND_BY_IDS_QUERY, (Object) ids.toArray(new Long[0])).stream()
+                .collect(Collectors.toMap(User::getId, user -> user));
+        List<User> users = ids.stream()
+                .map(usersById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        hydrateFriends(users);
+        return users;
+    }
 
-        userFriendsSet.retainAll(otherUserFriendsSet);
+    /**
+     * Получает все дружбы для графа дружбы.
+     *
+     * @return Идентификаторы друзей по идентификатору пользователя.
+     */
+    public Map<Long, List<Long>> getFriendIdsByUser() {
+        Map<Long, List<Long>> friends = new HashMap<>();
+        jdbc.query(FIND_ALL_FRIENDSHIPS_QUERY, (RowCallbackHandler) rs -> friends
+                .computeIfAbsent(rs.getLong("USER_ID"), userId -> new ArrayList<>())
+                .add(rs.getLong("FRIEND_ID")));
+        return friends;
+    }
 
-        return userFriendsSet.stream()
-                .map(this::getUserById)
-                .collect(Collectors.toList());
+    /**
+     * Получает идентификаторы фильмов, которым пользователь поставил лайк.
+     *
+     * @param userId Идентификатор пользователя.
+     * @return Список идентификаторов фильмов.
+     */
+    public List<Long> findLikedFilmIds(long userId) {
+        return findManyInstances(FIND_LIKED_FILM_IDS_QUERY, Long.class, userId);
     }
 
+    /**
+     * Удаляет пользователя вместе с его отзывами, лайками и дружбами.
+     * Счетчики лайков фильмов, которые нравились пользователю, уменьшаются в той же транзакции.
+     *
+     * @param userId Идентификатор пользователя.
+     */
+    @Transactional
     public void deleteUser(long userId) {
         delete(DELETE_USER_REVIEW_QUERY, userId);
+        jdbc.update(DECREASE_LIKE_COUNT_BY_USER_QUERY, userId);
         delete(DELETE_USER_LIKE_QUERY, userId);
         deleteByTwoIds(DELETE_USER_FRIEND_QUERY, userId, userId);
         delete(DELETE_USER_QUERY, userId);
     }
 
     /**
-     * Вспомогательный метод для получения коллекции идентификаторов друзей пользователя.
+     * Заполняет множества друзей у списка пользователей одним запросом к таблице FRIENDSHIP.
+     * Строки результата сразу добавляются в множество друзей соответствующего пользователя.
      *
-     * @param id Идентификатор пользователя.
-     * @return Множество идентификаторов друзей.
+     * @param users Пользователи, для которых нужно загрузить друзей.
      */
-    private Set<Long> getFriendsSet(Long id) {
-        return new HashSet<>(findManyInstances(FIND_FRIENDS_IDS, Long.class, id));
+    private void hydrateFriends(List<User> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        Map<Long, List<User>> usersById = new HashMap<>();
+        for (User user : users) {
+            user.setFriends(new HashSet<>());
+            usersById.computeIfAbsent(user.getId(), id -> new ArrayList<>()).add(user);
+        }
+        jdbc.query(FIND_FRIENDS_BY_USER_IDS_QUERY, (RowCallbackHandler) rs -> {
+            long friendId = rs.getLong("FRIEND_ID");
+            for (User user : usersById.get(rs.getLong("USER_ID"))) {
+                user.getFriends().add(friendId);
+            }
+        }, (Object) usersById.keySet().toArray(new Long[0]));
     }
 }
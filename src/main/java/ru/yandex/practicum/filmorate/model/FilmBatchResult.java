@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * FilmBatchResult.
+ * Результат пакетной загрузки фильмов хранит поля:
+ * - added: количество добавленных фильмов
+ * - ids: идентификаторы добавленных фильмов в порядке их следования в запросе
+ * - errors: ошибки фильмов, которые не были добавлены, с номером фильма в запросе (с нуля)
+ */
+@Data
+public class FilmBatchResult {
+    private int added;
+    private List<Long> ids = new ArrayList<>();
+    private List<ItemError> errors = new ArrayList<>();
+
+    /**
+     * Ошибка одного фильма пакета.
+     *
+     * @param index   Номер фильма в запросе, начиная с нуля.
+     * @param message Описание ошибки.
+     */
+    public record ItemError(int index, String message) {
+    }
+}
@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.model;
+
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * ReviewCursor.
+ * Позиция в списке отзывов, упорядоченном по полезности (по убыванию) и идентификатору (по возрастанию).
+ * Курсор хранит ключ последнего полученного отзыва:
+ * - useful: полезность отзыва
+ * - reviewId: идентификатор отзыва
+ * Клиенту курсор передается в виде непрозрачной строки.
+ */
+public record ReviewCursor(long useful, long reviewId) {
+
+    private static final String SEPARATOR = ":";
+
+    /**
+     * Создает курсор, указывающий на переданный отзыв.
+     *
+     * @param review Последний полученный отзыв.
+     * @return Курсор.
+     */
+    public static ReviewCursor of(Review review) {
+        return new ReviewCursor(review.getUseful(), review.getReviewId());
+    }
+
+    /**
+     * Восстанавливает курсор из строки, полученной от клиента.
+     *
+     * @param value Строка курсора.
+     * @return Курсор.
+     * @throws ValidationException Если строка не является курсором.
+     */
+    public static ReviewCursor decode(String value) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8)
+                    .split(SEPARATOR);
+            if (parts.length != 2) {
+                throw new ValidationException("Некорректный курсор");
+            }
+            return new ReviewCursor(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Некорректный курсор");
+        }
+    }
+
+    /**
+     * Кодирует курсор в строку для передачи клиенту.
+     *
+     * @return Строка курсора.
+     */
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((useful + SEPARATOR + reviewId).getBytes(StandardCharsets.UTF_8));
+    }
+}
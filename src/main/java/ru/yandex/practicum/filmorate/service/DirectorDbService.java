@@ -1,14 +1,17 @@
 package ru.yandex.practicum.filmorate.service;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dal.DirectorDbStorage;
+import ru.yandex.practicum.filmorate.dal.IdRegistry;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.storage.FilmSearchIndex;
 
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Сервис для работы с данными о режиссерах в базе данных.
@@ -17,32 +20,119 @@ import java.util.List;
  * с объектами типа {@link Director}. Он использует {@link DirectorDbStorage} для взаимодействия с базой данных
  * и {@link DirectorDbValidatorService} для валидации данных о режиссерах.
  * </p>
+ * <p>
+ * Сервис хранит ограниченный по размеру кэш режиссеров по идентификатору (вытесняются давно не использованные
+ * записи). Промахи дозагружаются из базы одним запросом на весь набор идентификаторов, а записи кэша
+ * сбрасываются при создании, обновлении и удалении режиссера. Счетчики попаданий и промахов доступны
+ * через {@link #getCacheHits()} и {@link #getCacheMisses()}.
+ * </p>
+ * <p>
+ * Изменения имен режиссеров передаются в {@link FilmSearchIndex}, чтобы поиск фильмов по режиссеру
+ * учитывал их без перестроения индекса.
+ * </p>
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class DirectorDbService {
 
     private final DirectorDbStorage directorDbStorage;
     private final DirectorDbValidatorService directorDbValidator;
+    private final FilmSearchIndex filmSearchIndex;
+    private final IdRegistry idRegistry;
+    private final Map<Long, Director> cache;
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    public DirectorDbService(DirectorDbStorage directorDbStorage, DirectorDbValidatorService directorDbValidator,
+                             FilmSearchIndex filmSearchIndex, IdRegistry idRegistry,
+                             @Value("${filmorate.director-cache.max-size:10000}") int cacheMaxSize) {
+        this.directorDbStorage = directorDbStorage;
+        this.directorDbValidator = directorDbValidator;
+        this.filmSearchIndex = filmSearchIndex;
+        this.idRegistry = idRegistry;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Director> eldest) {
+                return size() > cacheMaxSize;
+            }
+        });
+    }
 
     /**
-     * Получает список всех режиссеров из базы данных.
+     * Получает список всех режиссеров из базы данных и заполняет ими кэш.
      *
      * @return Список всех режиссеров.
      */
     public List<Director> findAll() {
-        return directorDbStorage.findAll();
+        List<Director> directors = directorDbStorage.findAll();
+        for (Director director : directors) {
+            cache.put(director.getId(), copyOf(director));
+        }
+        return directors;
     }
 
     /**
      * Находит режиссера по его идентификатору.
      *
      * @param id Идентификатор режиссера.
-     * @return Режиссер с указанным идентификатором, или null, если не найден.
+     * @return Режиссер с указанным идентификатором.
+     * @throws NotFoundException Если режиссер с указанным идентификатором не найден.
      */
     public Director findById(Long id) {
-        return directorDbStorage.findById(id);
+        Director cached = cache.get(id);
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            return copyOf(cached);
+        }
+        cacheMisses.incrementAndGet();
+        Director director = directorDbStorage.findById(id);
+        cache.put(id, copyOf(director));
+        return director;
+    }
+
+    /**
+     * Находит режиссеров по набору идентификаторов.
+     * <p>
+     * Режиссеры, которых нет в кэше, загружаются из базы одним запросом.
+     * Несуществующие идентификаторы в результат не попадают.
+     * </p>
+     *
+     * @param ids Идентификаторы режиссеров.
+     * @return Режиссеры, сгруппированные по идентификатору.
+     */
+    public Map<Long, Director> findByIds(Collection<Long> ids) {
+        Map<Long, Director> result = new HashMap<>();
+        Set<Long> missing = new HashSet<>();
+        for (Long id : ids) {
+            if (id == null) {
+                continue;
+            }
+            Director cached = cache.get(id);
+            if (cached != null) {
+                cacheHits.incrementAndGet();
+                result.put(id, copyOf(cached));
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            cacheMisses.addAndGet(missing.size());
+            for (Director director : directorDbStorage.findByIds(missing)) {
+                cache.put(director.getId(), copyOf(director));
+                result.put(director.getId(), director);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Проверяет, что все режиссеры с указанными идентификаторами существуют.
+     *
+     * @param ids Идентификаторы режиссеров.
+     * @throws NotFoundException Если хотя бы один режиссер не существует.
+     */
+    public void checkDirectorIds(Collection<Long> ids) {
+        ids.forEach(directorDbValidator::checkDirectorId);
     }
 
     /**
@@ -65,7 +155,11 @@ public class DirectorDbService {
      */
     public Director create(Director director) {
         directorDbValidator.checkDirectorNameField(director);
-        return directorDbStorage.createDirector(director);
+        Director created = directorDbStorage.createDirector(director);
+        cache.remove(created.getId());
+        idRegistry.register(IdRegistry.Table.DIRECTORS, created.getId());
+        filmSearchIndex.putDirector(created.getId(), created.getName());
+        return created;
     }
 
     /**
@@ -81,7 +175,10 @@ public class DirectorDbService {
         FieldsValidatorService.validateDirectorId(director);
         directorDbValidator.checkDirectorId(director.getId());
         directorDbValidator.checkDirectorNameField(director);
-        return directorDbStorage.update(director);
+        Director updated = directorDbStorage.update(director);
+        cache.remove(director.getId());
+        filmSearchIndex.putDirector(director.getId(), director.getName());
+        return updated;
     }
 
     /**
@@ -94,6 +191,9 @@ public class DirectorDbService {
         log.info("Проверка существования режиссера с id: {}", id);
         findById(id);
         directorDbStorage.delete(id);
+        cache.remove(id);
+        idRegistry.unregister(IdRegistry.Table.DIRECTORS, id);
+        filmSearchIndex.removeDirector(id);
         log.info("Режиссер с id {} удален.", id);
     }
 
@@ -106,4 +206,29 @@ public class DirectorDbService {
     public List<Director> findDirectorsByFilmId(Long filmId) {
         return directorDbStorage.findDirectorsByFilmId(filmId);
     }
+
+    /**
+     * Возвращает количество обращений к кэшу режиссеров, обслуженных без запроса к базе.
+     *
+     * @return Число попаданий в кэш.
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * Возвращает количество режиссеров, которых пришлось загружать из базы.
+     *
+     * @return Число промахов кэша.
+     */
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    private static Director copyOf(Director source) {
+        Director director = new Director();
+        director.setId(source.getId());
+        director.setName(source.getName());
+        return director;
+    }
 }
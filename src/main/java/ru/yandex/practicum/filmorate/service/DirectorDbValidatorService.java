@@ -5,6 +5,7 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dal.BaseRepository;
+import ru.yandex.practicum.filmorate.dal.IdRegistry;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.model.Director;
@@ -13,19 +14,21 @@ import ru.yandex.practicum.filmorate.model.Director;
  * Сервис для валидации данных о режиссерах.
  * <p>
  * Данный класс предоставляет методы для проверки корректности данных о режиссерах,
- * таких как имя и идентификатор. Он наследует функциональность от {@link BaseRepository}
- * и использует {@link JdbcTemplate} для выполнения SQL-запросов к базе данных.
+ * таких как имя и идентификатор. Существование режиссера проверяется по {@link IdRegistry}
+ * без обращения к базе данных, уникальность имени - запросом {@code SELECT 1}.
  * </p>
  */
 @Slf4j
 @Service
 public class DirectorDbValidatorService extends BaseRepository<Director> {
 
-    private static final String FIND_DIRECTOR_BY_NAME = "SELECT * FROM DIRECTORS WHERE DIRECTOR_NAME =?";
-    private static final String FIND_BY_ID = "SELECT * FROM DIRECTORS WHERE DIRECTOR_ID = ?";
+    private static final String FIND_DIRECTOR_BY_NAME = "SELECT 1 FROM DIRECTORS WHERE DIRECTOR_NAME = ?";
 
-    public DirectorDbValidatorService(JdbcTemplate jdbc, RowMapper<Director> mapper) {
+    private final IdRegistry idRegistry;
+
+    public DirectorDbValidatorService(JdbcTemplate jdbc, RowMapper<Director> mapper, IdRegistry idRegistry) {
         super(jdbc, mapper);
+        this.idRegistry = idRegistry;
     }
 
     /**
@@ -44,7 +47,7 @@ public class DirectorDbValidatorService extends BaseRepository<Director> {
         if (director.getName() == null || director.getName().isBlank()) {
             throw new ValidationException("Имя режиссера не может быть пустым");
         }
-        if (findOne(FIND_DIRECTOR_BY_NAME, director.getName()).isPresent()) {
+        if (!findManyInstances(FIND_DIRECTOR_BY_NAME, Integer.class, director.getName()).isEmpty()) {
             throw new ValidationException("Режиссер с таким именем " + director.getName() + " уже существует.");
         }
     }
@@ -52,7 +55,7 @@ public class DirectorDbValidatorService extends BaseRepository<Director> {
     /**
      * Проверяет существование режиссера по его идентификатору.
      * <p>
-     * Метод проверяет, существует ли режиссер с указанным идентификатором в базе данных.
+     * Метод проверяет, существует ли режиссер с указанным идентификатором.
      * Если режиссер не найден, выбрасывается {@link NotFoundException}.
      * </p>
      *
@@ -61,7 +64,7 @@ public class DirectorDbValidatorService extends BaseRepository<Director> {
      */
     public void checkDirectorId(Long id) {
         log.info("Проверка id режиссера; {}", id);
-        if (findOne(FIND_BY_ID, id).isEmpty())
+        if (id == null || !idRegistry.exists(IdRegistry.Table.DIRECTORS, id))
             throw new NotFoundException("Режиссер с id " + id + " не существует");
     }
 }
@@ -2,13 +2,18 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dal.EventJournal;
 import ru.yandex.practicum.filmorate.dal.HistoryDbStorage;
 import ru.yandex.practicum.filmorate.dal.UserDbStorage;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.storage.TimelineStore;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Сервис для работы с лентой событий пользователей.
@@ -16,6 +21,8 @@ import java.util.List;
  * Данный класс предоставляет методы для получения ленты событий, связанных с
  * конкретным пользователем. Он использует {@link HistoryDbStorage} для доступа
  * к данным о событиях и {@link UserDbStorage} для проверки существования пользователя.
+ * Перед чтением ленты ожидающие записи события из {@link EventJournal} сохраняются в базу данных.
+ * Лента событий друзей читается из памяти через {@link TimelineStore}.
  * </p>
  */
 @Service
@@ -24,6 +31,8 @@ public class FeedService {
 
     private final HistoryDbStorage historyDbStorage;
     private final UserDbStorage userDbStorage;
+    private final EventJournal eventJournal;
+    private final TimelineStore timelineStore;
 
     /**
      * Получает ленту событий для указанного пользователя.
@@ -38,7 +47,114 @@ public class FeedService {
      * @throws NotFoundException Если пользователь с указанным идентификатором не найден.
      */
     public List<Event> getFeed(long userId) {
-        userDbStorage.getUserById(userId);
+        checkUser(userId);
         return new ArrayList<>(historyDbStorage.getEventsByUser(userId));
     }
+
+    /**
+     * Получает страницу ленты событий пользователя.
+     * <p>
+     * Возвращаются не более limit последних событий с идентификатором меньше before в порядке
+     * возрастания идентификатора. Для следующей страницы в before передается идентификатор
+     * первого события текущей страницы.
+     * </p>
+     *
+     * @param userId Идентификатор пользователя.
+     * @param before Идентификатор события, до которого выбирается страница, по умолчанию - с конца ленты.
+     * @param limit  Размер страницы, по умолчанию {@link FieldsValidatorService#DEFAULT_PAGE_SIZE}.
+     * @return Страница событий.
+     * @throws NotFoundException   Если пользователь с указанным идентификатором не найден.
+     * @throws ValidationException Если параметры страницы некорректны.
+     */
+    public List<Event> getFeedPage(long userId, Long before, Integer limit) {
+        long beforeId = Optional.ofNullable(before).orElse(Long.MAX_VALUE);
+        int pageSize = Optional.ofNullable(limit).orElse(FieldsValidatorService.DEFAULT_PAGE_SIZE);
+        FieldsValidatorService.validateFeedPage(beforeId, pageSize);
+        checkUser(userId);
+        return historyDbStorage.getEventsPage(userId, beforeId, pageSize);
+    }
+
+    /**
+     * Получает страницу ленты событий друзей пользователя.
+     * <p>
+     * Возвращаются не более limit последних действий друзей пользователя с идентификатором меньше before
+     * в порядке возрастания идентификатора. Лента хранит ограниченное число последних событий.
+     * </p>
+     *
+     * @param userId Идентификатор пользователя.
+     * @param before Идентификатор события, до которого выбирается страница, по умолчанию - с конца ленты.
+     * @param limit  Размер страницы, по умолчанию {@link FieldsValidatorService#DEFAULT_PAGE_SIZE}.
+     * @return Страница событий друзей.
+     * @throws NotFoundException   Если пользователь с указанным идентификатором не найден.
+     * @throws ValidationException Если параметры страницы некорректны.
+     */
+    public List<Event> getTimeline(long userId, Long before, Integer limit) {
+        long beforeId = Optional.ofNullable(before).orElse(Long.MAX_VALUE);
+        int pageSize = Optional.ofNullable(limit).orElse(FieldsValidatorService.DEFAULT_PAGE_SIZE);
+        FieldsValidatorService.validateFeedPage(beforeId, pageSize);
+        checkUser(userId);
+        return timelineStore.getPage(userId, beforeId, pageSize);
+    }
+
+    /**
+     * Проверяет существование пользователя и возвращает источник всех его событий,
+     * которые читаются из базы данных построчно при передаче в обработчик.
+     *
+     * @param userId Идентификатор пользователя.
+     * @return Источник событий в порядке возрастания идентификатора.
+     * @throws NotFoundException Если пользователь с указанным идентификатором не найден.
+     */
+    public Consumer<Consumer<Event>> streamFeed(long userId) {
+        return streamFeed(userId, 0);
+    }
+
+    /**
+     * Проверяет существование пользователя и возвращает источник его событий, следующих
+     * за указанным, которые читаются из базы данных построчно при передаче в обработчик.
+     *
+     * @param userId Идентификатор пользователя.
+     * @param after  Идентификатор события, после которого выбираются события (не включительно).
+     * @return Источник событий в порядке возрастания идентификатора.
+     * @throws NotFoundException Если пользователь с указанным идентификатором не найден.
+     */
+    public Consumer<Consumer<Event>> streamFeed(long userId, long after) {
+        checkUser(userId);
+        return action -> historyDbStorage.forEachEventByUser(userId, after, action);
+    }
+
+    /**
+     * Возвращает страницу событий пользователя, следующих за указанным, без проверки существования
+     * пользователя.
+     *
+     * @param userId Идентификатор пользователя.
+     * @param after  Идентификатор события, после которого выбираются события (не включительно).
+     * @param limit  Максимальное количество событий.
+     * @return Не более limit событий в порядке возрастания идентификатора.
+     */
+    public List<Event> getFeedAfter(long userId, long after, int limit) {
+        return historyDbStorage.getEventsAfter(userId, after, limit);
+    }
+
+    /**
+     * Подписывает обработчик на новые события всех пользователей. Обработчик получает события
+     * пакетами сразу после их записи в базу данных.
+     *
+     * @param listener Обработчик записанных событий.
+     */
+    public void addFeedListener(Consumer<List<Event>> listener) {
+        eventJournal.addListener(listener);
+    }
+
+    /**
+     * Проверяет существование пользователя и записывает накопленные события журнала,
+     * чтобы последующее чтение истории включало последние действия.
+     *
+     * @param userId Идентификатор пользователя.
+     * @throws NotFoundException Если пользователь с указанным идентификатором не найден.
+     */
+    public void checkUser(long userId) {
+        userDbStorage.findById(userId)
+                .orElseThrow(() -> new NotFoundException("Пользователь с id " + userId + " не найден"));
+        eventJournal.flush();
+    }
 }
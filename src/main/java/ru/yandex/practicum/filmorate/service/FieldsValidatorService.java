@@ -15,6 +15,8 @@ import java.util.Map;
  */
 public class FieldsValidatorService {
 
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
     private static final LocalDate CINEMA_BIRTHDAY = LocalDate.of(1895, 12, 28);
 
     /**
@@ -135,4 +137,59 @@ public class FieldsValidatorService {
             throw new ValidationException("Id должен быть указан");
         }
     }
+
+    /**
+     * Проверяет параметры постраничной выборки по возрастанию идентификатора.
+     * <p>
+     * Данный метод проверяет, что идентификатор, после которого начинается страница, не отрицателен,
+     * а размер страницы находится в пределах от 1 до {@link #MAX_PAGE_SIZE}.
+     * </p>
+     *
+     * @param after Идентификатор, после которого начинается страница; 0 означает начало выборки.
+     * @param limit Размер страницы.
+     * @throws ValidationException Если after отрицателен или limit вне допустимых пределов.
+     */
+    public static void validatePage(long after, int limit) {
+        if (after < 0) {
+            throw new ValidationException("Параметр after не может быть отрицательным");
+        }
+        validatePageLimit(limit);
+    }
+
+    /**
+     * Проверяет параметры постраничной выборки ленты событий.
+     * <p>
+     * Страницы ленты идут от новых событий к старым, поэтому граница страницы before должна быть положительной,
+     * а размер страницы - находиться в пределах от 1 до {@link #MAX_PAGE_SIZE}.
+     * </p>
+     *
+     * @param before Идентификатор события, до которого начинается страница.
+     * @param limit  Размер страницы.
+     * @throws ValidationException Если before не положителен или limit вне допустимых пределов.
+     */
+    public static void validateFeedPage(long before, int limit) {
+        if (before <= 0) {
+            throw new ValidationException("Параметр before должен быть положительным");
+        }
+        validatePageLimit(limit);
+    }
+
+    /**
+     * Проверяет размер страницы при выборке отзывов по курсору.
+     * <p>
+     * Корректность самого курсора проверяется при его разборе, здесь проверяется только размер страницы.
+     * </p>
+     *
+     * @param limit Размер страницы.
+     * @throws ValidationException Если limit меньше 1 или больше {@link #MAX_PAGE_SIZE}.
+     */
+    public static void validateReviewPage(int limit) {
+        validatePageLimit(limit);
+    }
+
+    private static void validatePageLimit(int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Параметр limit должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+    }
 }
@@ -0,0 +1,135 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dal.FilmDbStorage;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmBatchResult;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Сервис пакетной загрузки фильмов.
+ * <p>
+ * Фильмы читаются по одному и проверяются без обращения к базе данных: MPA и жанры - по справочникам
+ * {@link ReferenceDataService}, режиссеры - по множеству идентификаторов, загруженному один раз в начале
+ * загрузки. Корректные фильмы накапливаются порциями по {@code filmorate.film-batch.chunk-size} и
+ * записываются пакетными запросами, каждая порция - в своей транзакции. Некорректные фильмы пропускаются
+ * и попадают в список ошибок результата.
+ * </p>
+ * <p>
+ * Если база данных отклонила порцию, ее транзакция откатывается, все фильмы порции попадают в список ошибок,
+ * и загрузка продолжается со следующей порции. Уже записанные порции остаются в базе данных, поэтому
+ * результат всегда описывает каждый элемент запроса: он либо добавлен, либо указан в ошибках.
+ * </p>
+ */
+@Slf4j
+@Service
+public class FilmBatchService {
+
+    private final FilmDbStorage filmDbStorage;
+    private final FilmDbService filmDbService;
+    private final ReferenceDataService referenceDataService;
+    private final DirectorDbService directorDbService;
+    private final int chunkSize;
+
+    public FilmBatchService(FilmDbStorage filmDbStorage, FilmDbService filmDbService,
+                            ReferenceDataService referenceDataService, DirectorDbService directorDbService,
+                            @Value("${filmorate.film-batch.chunk-size:1000}") int chunkSize) {
+        this.filmDbStorage = filmDbStorage;
+        this.filmDbService = filmDbService;
+        this.referenceDataService = referenceDataService;
+        this.directorDbService = directorDbService;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Добавляет фильмы, пропуская некорректные.
+     *
+     * @param films Фильмы в порядке их следования в запросе. Итератор может выбрасывать
+     *              {@link ValidationException} для элемента, который не удалось прочитать.
+     * @return Идентификаторы добавленных фильмов и ошибки пропущенных.
+     */
+    public FilmBatchResult addFilms(Iterator<Film> films) {
+        Set<Long> directorIds = directorDbService.findAll().stream()
+                .map(Director::getId)
+                .collect(Collectors.toSet());
+        FilmBatchResult result = new FilmBatchResult();
+        List<Film> chunk = new ArrayList<>(chunkSize);
+        List<Integer> indexes = new ArrayList<>(chunkSize);
+        for (int index = 0; films.hasNext(); index++) {
+            try {
+                Film film = films.next();
+                validate(film, directorIds);
+                chunk.add(film);
+                indexes.add(index);
+            } catch (ValidationException | NotFoundException e) {
+                result.getErrors().add(new FilmBatchResult.ItemError(index, e.getMessage()));
+            }
+            if (chunk.size() == chunkSize) {
+                addChunk(chunk, indexes, result);
+            }
+        }
+        addChunk(chunk, indexes, result);
+        log.info("Пакетная загрузка фильмов: добавлено {}, ошибок {}", result.getAdded(), result.getErrors().size());
+        return result;
+    }
+
+    private void addChunk(List<Film> chunk, List<Integer> indexes, FilmBatchResult result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            filmDbStorage.addFilms(chunk);
+            filmDbService.indexFilms(chunk);
+            chunk.forEach(film -> result.getIds().add(film.getId()));
+            result.setAdded(result.getAdded() + chunk.size());
+        } catch (DataAccessException e) {
+            log.error("Пакетная загрузка фильмов: не удалось записать порцию из {} фильмов", chunk.size(), e);
+            indexes.forEach(index -> result.getErrors().add(
+                    new FilmBatchResult.ItemError(index, "Не удалось сохранить фильм в базе данных")));
+            result.getErrors().sort(Comparator.comparingInt(FilmBatchResult.ItemError::index));
+        }
+        chunk.clear();
+        indexes.clear();
+    }
+
+    private void validate(Film film, Set<Long> directorIds) {
+        if (film.getReleaseDate() == null) {
+            throw new ValidationException("Дата релиза должна быть указана");
+        }
+        FieldsValidatorService.validateReleaseDate(film);
+        int mpaId = film.getMpa().getId();
+        film.setMpa(referenceDataService.findMpa(mpaId)
+                .orElseThrow(() -> new ValidationException("MPA с id " + mpaId + " не существует")));
+        for (Genre genre : film.getGenres()) {
+            if (genre == null) {
+                throw new ValidationException("Жанр не может быть Null");
+            }
+            if (referenceDataService.findGenre(genre.getId()).isEmpty()) {
+                throw new ValidationException("Жанр с id " + genre.getId() + " не существует");
+            }
+        }
+        if (film.getDirectors() != null) {
+            for (Director director : film.getDirectors()) {
+                if (director == null) {
+                    throw new ValidationException("Режиссер не может быть Null");
+                }
+                if (!directorIds.contains(director.getId())) {
+                    throw new NotFoundException("Режиссер с id " + director.getId() + " не существует");
+                }
+            }
+        }
+    }
+}
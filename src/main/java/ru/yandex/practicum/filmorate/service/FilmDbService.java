@@ -1,21 +1,28 @@
 package ru.yandex.practicum.filmorate.service;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dal.FilmDbStorage;
-import ru.yandex.practicum.filmorate.dal.HistoryDbStorage;
+import ru.yandex.practicum.filmorate.dal.EventJournal;
+import ru.yandex.practicum.filmorate.dal.IdRegistry;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Event;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.enums.EventTypes;
 import ru.yandex.practicum.filmorate.model.enums.OperationTypes;
+import ru.yandex.practicum.filmorate.storage.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.RecommendationEngine;
+import ru.yandex.practicum.filmorate.storage.ReviewIndex;
+import ru.yandex.practicum.filmorate.storage.UserLikesIndex;
 
-import java.util.Collection;
-import java.util.Comparator;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -28,12 +35,36 @@ import java.util.stream.Collectors;
 @Slf4j
 public class FilmDbService {
 
+    private static final int STREAM_CHUNK_SIZE = 500;
+
     private final FilmDbStorage filmDbStorage;
     private final MpaFieldsDbValidator mpaDbValidator;
+    private final FilmFieldsDbValidatorService filmDbValidator;
+    private final IdRegistry idRegistry;
     private final UserDbService userDbService;
     private final GenreDbService genreDbService;
-    private final HistoryDbStorage historyDbStorage;
+    private final EventJournal eventJournal;
     private final DirectorDbService directorDbService;
+    private final PopularityLeaderboard popularityLeaderboard;
+    private final FilmSearchIndex filmSearchIndex;
+    private final UserLikesIndex userLikesIndex;
+    private final RecommendationEngine recommendationEngine;
+    private final ReviewIndex reviewIndex;
+
+    /**
+     * Заполняет рейтинг популярности, индексы лайков, рекомендации и поисковый индекс данными из базы
+     * при старте приложения.
+     */
+    @PostConstruct
+    public void initIndexes() {
+        popularityLeaderboard.rebuild(filmDbStorage.getPopularityStats());
+        Map<Long, List<Long>> likes = filmDbStorage.getLikedFilmIdsByUser();
+        userLikesIndex.rebuild(likes);
+        recommendationEngine.rebuild(likes);
+        Map<Long, String> directorNames = new HashMap<>();
+        directorDbService.findAll().forEach(director -> directorNames.put(director.getId(), director.getName()));
+        filmSearchIndex.rebuild(filmDbStorage.getFilmNames(), directorNames, filmDbStorage.getFilmDirectorIds());
+    }
 
     /**
      * Возвращает коллекцию всех фильмов.
@@ -44,6 +75,42 @@ public class FilmDbService {
         return filmDbStorage.getAll();
     }
 
+    /**
+     * Возвращает страницу фильмов, упорядоченных по идентификатору.
+     *
+     * @param after Идентификатор последнего фильма предыдущей страницы, по умолчанию 0.
+     * @param limit Размер страницы, по умолчанию {@link FieldsValidatorService#DEFAULT_PAGE_SIZE}.
+     * @return Страница фильмов.
+     * @throws ValidationException Если параметры страницы некорректны.
+     */
+    public List<Film> getPage(Long after, Integer limit) {
+        long afterId = Optional.ofNullable(after).orElse(0L);
+        int pageSize = Optional.ofNullable(limit).orElse(FieldsValidatorService.DEFAULT_PAGE_SIZE);
+        FieldsValidatorService.validatePage(afterId, pageSize);
+        return filmDbStorage.getPage(afterId, pageSize);
+    }
+
+    /**
+     * Последовательно передает все фильмы в обработчик, загружая их порциями фиксированного размера.
+     * <p>
+     * В памяти одновременно находится не больше {@value #STREAM_CHUNK_SIZE} фильмов, поэтому
+     * потребление памяти и время до первого фильма не зависят от размера каталога.
+     * </p>
+     *
+     * @param action Обработчик, вызываемый для каждого фильма в порядке возрастания идентификатора.
+     */
+    public void forEachFilm(Consumer<Film> action) {
+        long after = 0;
+        List<Film> page;
+        do {
+            page = filmDbStorage.getPage(after, STREAM_CHUNK_SIZE);
+            page.forEach(action);
+            if (!page.isEmpty()) {
+                after = page.getLast().getId();
+            }
+        } while (page.size() == STREAM_CHUNK_SIZE);
+    }
+
     /**
      * Добавляет новый фильм в базу данных.
      *
@@ -55,9 +122,10 @@ public class FilmDbService {
         log.info("Добавляем фильм: {}", film.getName());
         FieldsValidatorService.validateReleaseDate(film);
         mpaDbValidator.checkMpaId(film.getMpa().getId());
+        Film added = filmDbStorage.addFilm(film);
+        putToIndexes(added);
         log.info("Фильм {} добавлен", film.getName());
-
-        return filmDbStorage.addFilm(film);
+        return added;
     }
 
     /**
@@ -72,15 +140,14 @@ public class FilmDbService {
         log.info("Проверка налиячия Id у фильма при обновлении: {}.", updatedFilm.getName());
         FieldsValidatorService.validateFilmId(updatedFilm);
         log.info("Проверка существования фильма в базе данных: {}.", updatedFilm.getName());
-        if (filmDbStorage.findById(updatedFilm.getId()).isEmpty()) {
-            throw new NotFoundException("Фильм с id " + updatedFilm.getId() + " не найден");
-        }
-        ;
+        filmDbValidator.checkFilmId(updatedFilm.getId());
         log.info("Проверка даты выпуска фильма при обновлении: {}.", updatedFilm.getName());
         FieldsValidatorService.validateReleaseDate(updatedFilm);
         log.info("Проверка полей фильма при обновлении: {}.", updatedFilm.getName());
         mpaDbValidator.checkMpaId(updatedFilm.getMpa().getId());
-        return filmDbStorage.update(updatedFilm);
+        Film updated = filmDbStorage.update(updatedFilm);
+        putToIndexes(updated);
+        return updated;
     }
 
     /**
@@ -93,6 +160,16 @@ public class FilmDbService {
         return filmDbStorage.findById(id);
     }
 
+    /**
+     * Проверяет существование фильма без загрузки его данных.
+     *
+     * @param id Идентификатор фильма.
+     * @throws NotFoundException Если фильм с указанным идентификатором не найден.
+     */
+    public void checkFilmId(long id) {
+        filmDbValidator.checkFilmId(id);
+    }
+
     /**
      * Получает фильм по его идентификатору.
      *
@@ -113,12 +190,14 @@ public class FilmDbService {
      */
     public void addLike(Long filmId, Long userId) {
         log.info("Проверка существования пользователя с Id {} при добавлении like.", userId);
-        userDbService.findById(userId)
-                .orElseThrow(() -> new NotFoundException("Пользователь с id " + userId + " не найден"));
+        userDbService.checkUserId(userId);
         log.info("Проверка существования фильма с Id {} при добавлении like.", filmId);
-        findById(filmId)
-                .orElseThrow(() -> new NotFoundException("Фильм с id " + filmId + " не найден"));
-        filmDbStorage.addLike(filmId, userId);
+        filmDbValidator.checkFilmId(filmId);
+        if (filmDbStorage.addLike(filmId, userId)) {
+            popularityLeaderboard.addLike(filmId);
+            userLikesIndex.addLike(userId, filmId);
+            recommendationEngine.addLike(userId, filmId);
+        }
         log.info("Фильму с id {} добавлен like пользователя с id {}.", filmId, userId);
         saveHistory(filmId, userId, OperationTypes.ADD);
     }
@@ -132,38 +211,62 @@ public class FilmDbService {
      */
     public void deleteLike(Long filmId, Long userId) {
         log.info("Проверка существования фильма и пользователя: {} и {}", filmId, userId);
-        findById(filmId).orElseThrow(() -> new NotFoundException("Фильм с id " + filmId + " не найден"));
-        userDbService.findById(userId);
+        filmDbValidator.checkFilmId(filmId);
+        userDbService.checkUserId(userId);
         filmDbStorage.deleteLike(filmId, userId);
+        popularityLeaderboard.removeLike(filmId);
+        userLikesIndex.removeLike(userId, filmId);
+        recommendationEngine.removeLike(userId, filmId);
         log.info("У фильма с id {} удален like пользователя id {}.", filmId, userId);
         saveHistory(filmId, userId, OperationTypes.REMOVE);
     }
 
     /**
      * Возвращает список самых популярных фильмов.
+     * Порядок фильмов берется из рейтинга популярности в памяти, из базы загружаются только
+     * возвращаемые фильмы.
      *
-     * @param count Количество фильмов, которые нужно вернуть.
+     * @param count   Количество фильмов, которые нужно вернуть.
+     * @param genreId Идентификатор жанра для фильтрации.
+     * @param year    Год выхода для фильтрации.
      * @return Список из count самых популярных фильмов.
+     * @throws NotFoundException   Если жанр с указанным идентификатором не найден.
+     * @throws ValidationException Если count отрицательный.
      */
     public List<Film> getPopularFilms(Integer count, Integer genreId, Integer year) {
-        Optional<Integer> optionalCount = Optional.ofNullable(count);
-        return getAll()
-                .stream()
-                //.filter(film -> !film.getLikes().isEmpty())
-                .sorted((film1, film2) -> Integer.compare(film2.getLikes().size(), film1.getLikes().size()))
-                .filter(film -> genreId == null || film.getGenres().contains(genreDbService.findById(genreId)))
-                .filter(film -> year == null || film.getReleaseDate().getYear() == year)
-                .limit(optionalCount.orElse(Integer.MAX_VALUE))
-                .collect(Collectors.toList());
+        if (count != null && count < 0) {
+            throw new ValidationException("Количество фильмов не может быть отрицательным");
+        }
+        if (genreId != null) {
+            genreDbService.findById(genreId);
+        }
+        return filmDbStorage.getFilmsByIds(popularityLeaderboard.top(count, genreId, year));
+    }
+
+    /**
+     * Сверяет рейтинг популярности с данными в базе.
+     *
+     * @param repair Перестроить рейтинг из базы, если найдены расхождения.
+     * @return Идентификаторы фильмов, для которых рейтинг расходится с базой.
+     */
+    public List<Long> checkPopularityLeaderboard(boolean repair) {
+        List<PopularityLeaderboard.FilmStats> stats = filmDbStorage.getPopularityStats();
+        List<Long> mismatches = popularityLeaderboard.findMismatches(stats);
+        if (!mismatches.isEmpty()) {
+            log.warn("Рейтинг популярности расходится с базой для фильмов: {}", mismatches);
+            if (repair) {
+                popularityLeaderboard.rebuild(stats);
+            }
+        }
+        return mismatches;
     }
 
     /**
      * Получает список общих фильмов между двумя пользователями, отсортированный по количеству лайков.
      * <p>
-     * Данный метод извлекает фильмы, которые оба пользователя (пользователь и его друг) оценили,
-     * и сортирует их в порядке убывания количества лайков. Сначала выполняется запрос к базе данных
-     * для получения общих фильмов, после чего результаты сортируются с использованием компаратора,
-     * который сравнивает количество лайков для каждого фильма.
+     * Общие фильмы находятся пересечением отсортированных списков лайков двух пользователей из {@link UserLikesIndex},
+     * сортируются по убыванию общего количества лайков из рейтинга популярности, и только они
+     * загружаются из базы данных.
      * </p>
      *
      * @param userId   Идентификатор пользователя, для которого запрашивается список общих фильмов.
@@ -171,11 +274,11 @@ public class FilmDbService {
      * @return Список общих фильмов между указанным пользователем и его другом, отсортированный по количеству лайков.
      */
     public List<Film> getCommonFilms(long userId, long friendId) {
-        Comparator<Film> comparator = Comparator.comparing(film -> film.getLikes().size(), Comparator.reverseOrder());
-        return filmDbStorage.getCommonFilms(userId, friendId)
+        Comparator<Long> comparator = Comparator.comparing(popularityLeaderboard::getLikes, Comparator.reverseOrder());
+        return filmDbStorage.getFilmsByIds(userLikesIndex.findCommon(userId, friendId)
                 .stream()
-                .sorted(comparator)
-                .toList();
+                .sorted(comparator.thenComparing(Comparator.naturalOrder()))
+                .toList());
     }
 
     /**
@@ -185,15 +288,20 @@ public class FilmDbService {
      */
     public void deleteFilm(long filmId) {
         filmDbStorage.deleteFilm(filmId);
+        idRegistry.unregister(IdRegistry.Table.FILMS, filmId);
+        popularityLeaderboard.removeFilm(filmId);
+        filmSearchIndex.removeFilm(filmId);
+        userLikesIndex.removeFilm(filmId);
+        recommendationEngine.removeFilm(filmId);
+        reviewIndex.removeFilm(filmId);
         log.info("Фильм с id {} удален.", filmId);
     }
 
     /**
      * Получает список фильмов, связанных с указанным режиссером, отсортированный по заданному критерию.
      * <p>
-     * Этот метод фильтрует все доступные фильмы, оставляя только те, которые связаны с режиссером
-     * с указанным идентификатором. После фильтрации список фильмов сортируется в соответствии с
-     * параметром `sortBy`, который определяет критерий сортировки.
+     * Фильмы режиссера выбираются и сортируются в базе данных одним запросом по таблице FILMS_DIRECTORS,
+     * после чего связанные данные загружаются только для найденных фильмов.
      * <p>
      * Доступные критерии сортировки:
      * - "year": сортировка по дате выхода фильма (по возрастанию).
@@ -211,22 +319,35 @@ public class FilmDbService {
     public List<Film> getDirectorFilms(Long id, String sortBy) {
         log.info("проверка существования режиссера с id {}.", id);
         directorDbService.findById(id);
-        Comparator<Film> comparator = switch (sortBy) {
-            case "year" -> Comparator.comparing(Film::getReleaseDate);
-            case "likes" -> Comparator.comparing(film -> film.getLikes().size(), Comparator.reverseOrder());
+        return switch (sortBy) {
+            case "year" -> filmDbStorage.getDirectorFilmsByYear(id);
+            case "likes" -> filmDbStorage.getDirectorFilmsByLikes(id);
             default -> throw new IllegalArgumentException("Неправильное значение sortBy: " + sortBy);
         };
+    }
 
-        return getAll()
-                .stream()
-                .filter(film -> {
-                    if (film.getDirectors().isEmpty()) {
-                        return false;
-                    }
-                    return film.getDirectors().iterator().next().getId().equals(id);
-                })
-                .sorted(comparator)
-                .collect(Collectors.toList());
+    /**
+     * Добавляет в реестр идентификаторов, рейтинг популярности и поисковый индекс фильмы,
+     * записанные в базу данных пакетом.
+     *
+     * @param films Добавленные фильмы с присвоенными идентификаторами.
+     */
+    public void indexFilms(Collection<Film> films) {
+        films.forEach(this::putToIndexes);
+    }
+
+    private void putToIndexes(Film film) {
+        idRegistry.register(IdRegistry.Table.FILMS, film.getId());
+        popularityLeaderboard.putFilm(film.getId(),
+                film.getReleaseDate() == null ? null : film.getReleaseDate().getYear(),
+                film.getGenres() == null ? Set.of() : film.getGenres().stream()
+                        .map(Genre::getId)
+                        .collect(Collectors.toSet()));
+        filmSearchIndex.putFilm(film.getId(), film.getName(),
+                film.getDirectors() == null ? Set.of() : film.getDirectors().stream()
+                        .map(Director::getId)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toSet()));
     }
 
     /**
@@ -235,7 +356,7 @@ public class FilmDbService {
      * Данный метод создает и сохраняет новое событие в базе данных, связанное с
      * определенной операцией, выполненной пользователем. Событие включает идентификатор
      * пользователя, временную метку, тип события и тип операции. Метод использует
-     * {@link HistoryDbStorage} для добавления события в историю.
+     * {@link EventJournal} для добавления события в историю.
      * </p>
      *
      * @param id             Идентификатор сущности, с которой связано событие (например, идентификатор фильма).
@@ -243,7 +364,7 @@ public class FilmDbService {
      * @param operationTypes Тип операции, связанной с событием (например, добавление или удаление лайка).
      */
     private void saveHistory(Long id, Long userId, OperationTypes operationTypes) {
-        historyDbStorage.addEvent(Event.builder()
+        eventJournal.append(Event.builder()
                 .userId(userId)
                 .timestamp(System.currentTimeMillis())
                 .eventType(EventTypes.LIKE)
@@ -254,6 +375,9 @@ public class FilmDbService {
 
     /**
      * searchFilm - поиск фильмов по названию и режиссеру.
+     * Идентификаторы подходящих фильмов находятся по поисковому индексу, из базы загружаются
+     * только найденные фильмы. При поиске по названию и режиссеру сначала идут фильмы,
+     * найденные по режиссеру.
      *
      * @param query значаение для поиска
      * @param by    поиск выполнять по названию фильма, режиссера или вместе
@@ -263,40 +387,40 @@ public class FilmDbService {
         log.info("Поиск фильмов по запросу: {} в: {}", query, by);
 
         String[] searchBy = by.split(",");
-        return filmDbStorage.getAll().stream()
-                .filter(film -> {
-                    boolean matchTitle = searchBy.length == 1 && searchBy[0].equalsIgnoreCase("title")
-                            && film.getName().toLowerCase().contains(query.toLowerCase());
-                    boolean matchDirector = searchBy.length == 1 && searchBy[0].equalsIgnoreCase("director")
-                            && film.getDirectors().stream()
-                            .anyMatch(director -> director.getName().toLowerCase().contains(query.toLowerCase()));
-                    boolean matchBoth = searchBy.length == 2 &&
-                            (film.getName().toLowerCase().contains(query.toLowerCase()) ||
-                                    film.getDirectors().stream()
-                                            .anyMatch(director -> director.getName().toLowerCase().contains(query.toLowerCase())));
-                    return matchTitle || matchDirector || matchBoth;
-                })
-                .sorted(Comparator.comparing((Film film) -> {
-                    boolean directorMatch = searchBy.length == 2 && film.getDirectors().stream()
-                            .anyMatch(director -> director.getName().toLowerCase().contains(query.toLowerCase()));
-                    return directorMatch ? 0 : 1;
-                }))
-                .collect(Collectors.toList());
+        String lowerQuery = query.toLowerCase();
+        Set<Long> titleMatches = Set.of();
+        Set<Long> directorMatches = Set.of();
+        if (searchBy.length == 1 && searchBy[0].equalsIgnoreCase("title")) {
+            titleMatches = filmSearchIndex.findByTitle(lowerQuery);
+        } else if (searchBy.length == 1 && searchBy[0].equalsIgnoreCase("director")) {
+            directorMatches = filmSearchIndex.findByDirector(lowerQuery);
+        } else if (searchBy.length == 2) {
+            titleMatches = filmSearchIndex.findByTitle(lowerQuery);
+            directorMatches = filmSearchIndex.findByDirector(lowerQuery);
+        }
+
+        Set<Long> directorFirst = searchBy.length == 2 ? directorMatches : Set.of();
+        Set<Long> found = new HashSet<>(titleMatches);
+        found.addAll(directorMatches);
+        return filmDbStorage.getFilmsByIds(found.stream()
+                .sorted(Comparator.comparing((Long id) -> directorFirst.contains(id) ? 0 : 1)
+                        .thenComparing(Comparator.naturalOrder()))
+                .toList());
     }
 
     /**
      * Получает рекомендации фильмов для указанного пользователя.
      * <p>
      * Данный метод извлекает список рекомендованных фильмов на основе предпочтений
-     * пользователя с заданным идентификатором. Рекомендации формируются на основе
-     * анализа данных о просмотренных фильмах и лайках пользователя. Метод использует
-     * {@link FilmDbStorage} для получения данных о рекомендациях.
+     * пользователя с заданным идентификатором. Рекомендации формируются в памяти
+     * {@link RecommendationEngine} по лайкам похожих пользователей, из базы данных
+     * загружаются только рекомендованные фильмы.
      * </p>
      *
      * @param id Идентификатор пользователя, для которого запрашиваются рекомендации фильмов.
      * @return Список рекомендованных фильмов для указанного пользователя.
      */
     public List<Film> getRecommendations(long id) {
-        return filmDbStorage.getRecommendations(id);
+        return filmDbStorage.getFilmsByIds(recommendationEngine.recommend(id));
     }
 }
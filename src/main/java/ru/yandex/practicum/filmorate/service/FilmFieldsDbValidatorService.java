@@ -1,28 +1,25 @@
 package ru.yandex.practicum.filmorate.service;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowMapper;
-import ru.yandex.practicum.filmorate.dal.BaseRepository;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dal.IdRegistry;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 
 /**
  * Сервис для валидации полей фильма в базе данных.
  * <p>
- * Данный класс наследуется от BaseRepository и предоставляет методы
- * для проверки корректности обновляемых данных фильма перед их сохранением
- * в базе данных.
+ * Данный класс предоставляет методы для проверки корректности обновляемых данных фильма перед их сохранением
+ * в базе данных. Существование фильма проверяется по {@link IdRegistry}.
  * </p>
  */
 @Slf4j
-public class FilmFieldsDbValidatorService extends BaseRepository<Film> {
+@Service
+@RequiredArgsConstructor
+public class FilmFieldsDbValidatorService {
 
-    private static final String FIND_BY_ID = "SELECT * FROM FILMS WHERE FILM_ID = ?";
-
-    public FilmFieldsDbValidatorService(JdbcTemplate jdbc, RowMapper<Film> mapper) {
-        super(jdbc, mapper);
-    }
+    private final IdRegistry idRegistry;
 
     /**
      * Проверяет корректность полей обновляемого фильма.
@@ -38,8 +35,18 @@ public class FilmFieldsDbValidatorService extends BaseRepository<Film> {
      * @throws NotFoundException Если фильм с указанным идентификатором не найден.
      */
     public void validateUpdateFilmFields(Film updatedFilm) {
-        if (findOne(FIND_BY_ID, updatedFilm.getId()).isEmpty()) {
-            throw new NotFoundException("Фильм с id = " + updatedFilm.getId() + " не найден");
+        checkFilmId(updatedFilm.getId());
+    }
+
+    /**
+     * Проверяет существование фильма по его идентификатору.
+     *
+     * @param id Идентификатор фильма.
+     * @throws NotFoundException Если фильм с указанным идентификатором не найден.
+     */
+    public void checkFilmId(long id) {
+        if (!idRegistry.exists(IdRegistry.Table.FILMS, id)) {
+            throw new NotFoundException("Фильм с id " + id + " не найден");
         }
     }
 }
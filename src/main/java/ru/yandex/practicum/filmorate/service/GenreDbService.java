@@ -12,12 +12,14 @@ import java.util.List;
  * Сервис для работы с жанрами фильмов в базе данных.
  * Предоставляет методы для получения информации о жанрах,
  * включая поиск по идентификатору и получение всех жанров.
+ * Справочник жанров читается из снимка {@link ReferenceDataService} без обращения к базе.
  */
 @Service
 @AllArgsConstructor
 public class GenreDbService {
 
     private final GenreDbStorage genreDbStorage;
+    private final ReferenceDataService referenceDataService;
 
     /**
      * Находит жанр по его идентификатору.
@@ -27,7 +29,8 @@ public class GenreDbService {
      * @throws NotFoundException Если жанр с указанным идентификатором не найден.
      */
     public Genre findById(int id) {
-        return genreDbStorage.findById(id);
+        return referenceDataService.findGenre(id)
+                .orElseThrow(() -> new NotFoundException("Жанр с id " + id + " не найден"));
     }
 
     /**
@@ -57,6 +60,6 @@ public class GenreDbService {
      * @return Список всех жанров в базе данных.
      */
     public List<Genre> findAll() {
-        return genreDbStorage.findAll();
+        return referenceDataService.findAllGenres();
     }
 }
@@ -1,7 +1,6 @@
 package ru.yandex.practicum.filmorate.service;
 
 import org.springframework.stereotype.Service;
-import ru.yandex.practicum.filmorate.dal.MpaDbStorage;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Mpa;
 
@@ -11,14 +10,15 @@ import java.util.List;
  * Сервис для работы с рейтингами фильмов (MPA) в базе данных.
  * Предоставляет методы для получения информации о рейтингах,
  * включая поиск по идентификатору и получение всех рейтингов.
+ * Данные читаются из снимка справочников {@link ReferenceDataService} без обращения к базе.
  */
 @Service
 public class MpaDbService {
 
-    private final MpaDbStorage mpaDbStorage;
+    private final ReferenceDataService referenceDataService;
 
-    public MpaDbService(MpaDbStorage mpaDbStorage) {
-        this.mpaDbStorage = mpaDbStorage;
+    public MpaDbService(ReferenceDataService referenceDataService) {
+        this.referenceDataService = referenceDataService;
     }
 
     /**
@@ -29,7 +29,8 @@ public class MpaDbService {
      * @throws NotFoundException Если рейтинг с указанным идентификатором не найден.
      */
     public Mpa findById(int id) {
-        return mpaDbStorage.findById(id);
+        return referenceDataService.findMpa(id)
+                .orElseThrow(() -> new NotFoundException("MPA " + id + " not found"));
     }
 
     /**
@@ -38,7 +39,7 @@ public class MpaDbService {
      * @return Список всех рейтингов в базе данных.
      */
     public List<Mpa> findAll() {
-        return mpaDbStorage.findAll();
+        return referenceDataService.findAllMpa();
     }
 
     /**
@@ -49,6 +50,6 @@ public class MpaDbService {
      * @throws NotFoundException Если рейтинг с указанным идентификатором не найден.
      */
     public String findMpaNameById(int id) {
-        return mpaDbStorage.findById(id).getName();
+        return findById(id).getName();
     }
 }
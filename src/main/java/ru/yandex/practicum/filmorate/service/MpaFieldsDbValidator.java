@@ -1,26 +1,21 @@
 package ru.yandex.practicum.filmorate.service;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
-import ru.yandex.practicum.filmorate.dal.BaseRepository;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
-import ru.yandex.practicum.filmorate.model.Mpa;
 
 /**
- * Сервис для валидации полей рейтингов фильмов (MPA) в базе данных.
- * Проверяет корректность идентификаторов MPA и обеспечивает
- * целостность данных при работе с рейтингами.
+ * Сервис для валидации полей рейтингов фильмов (MPA).
+ * Проверяет корректность идентификаторов MPA по справочникам {@link ReferenceDataService}
+ * без обращения к базе данных и обеспечивает целостность данных при работе с рейтингами.
  */
 @Slf4j
 @Service
-public class MpaFieldsDbValidator extends BaseRepository<Mpa> {
-    private static final String FIND_BY_ID = "SELECT * FROM MPA WHERE MPA_ID = ?";
+@RequiredArgsConstructor
+public class MpaFieldsDbValidator {
 
-    public MpaFieldsDbValidator(JdbcTemplate jdbc, RowMapper<Mpa> mapper) {
-        super(jdbc, mapper);
-    }
+    private final ReferenceDataService referenceDataService;
 
     /**
      * Проверяет существование MPA по его идентификатору.
@@ -30,7 +25,7 @@ public class MpaFieldsDbValidator extends BaseRepository<Mpa> {
      */
     public void checkMpaId(int id) {
         log.info("Проверка id MPA; {}", id);
-        if (findOne(FIND_BY_ID, id).isEmpty())
+        if (referenceDataService.findMpa(id).isEmpty())
             throw new ValidationException("MPA с id " + id + " не существует");
     }
 }
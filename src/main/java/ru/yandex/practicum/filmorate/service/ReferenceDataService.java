@@ -0,0 +1,133 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dal.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dal.MpaDbStorage;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Сервис справочных данных: рейтингов MPA и жанров.
+ * <p>
+ * Справочники меняются только при перезагрузке data.sql, поэтому они загружаются один раз при старте
+ * приложения в неизменяемый снимок, где элементы лежат в массивах по индексу, равному идентификатору.
+ * Поиск по идентификатору не обращается к базе данных. Метод {@link #refresh()} перечитывает справочники
+ * и атомарно заменяет снимок. Наружу выдаются копии объектов, чтобы изменения у вызывающего кода
+ * не попадали в снимок.
+ * </p>
+ */
+@Slf4j
+@Service
+public class ReferenceDataService {
+
+    private final MpaDbStorage mpaDbStorage;
+    private final GenreDbStorage genreDbStorage;
+    private volatile Snapshot snapshot = new Snapshot(new Mpa[0], new Genre[0]);
+
+    public ReferenceDataService(MpaDbStorage mpaDbStorage, GenreDbStorage genreDbStorage) {
+        this.mpaDbStorage = mpaDbStorage;
+        this.genreDbStorage = genreDbStorage;
+    }
+
+    /**
+     * Перечитывает справочники MPA и жанров из базы данных и заменяет текущий снимок.
+     */
+    @PostConstruct
+    public void refresh() {
+        List<Mpa> mpaList = mpaDbStorage.findAll();
+        List<Genre> genreList = genreDbStorage.findAll();
+
+        Mpa[] mpaById = new Mpa[mpaList.stream().mapToInt(Mpa::getId).max().orElse(-1) + 1];
+        for (Mpa mpa : mpaList) {
+            mpaById[mpa.getId()] = copyOf(mpa);
+        }
+        Genre[] genresById = new Genre[genreList.stream().mapToInt(Genre::getId).max().orElse(-1) + 1];
+        for (Genre genre : genreList) {
+            genresById[genre.getId()] = copyOf(genre);
+        }
+        snapshot = new Snapshot(mpaById, genresById);
+        log.info("Загружены справочники: MPA - {}, жанров - {}", mpaList.size(), genreList.size());
+    }
+
+    /**
+     * Находит рейтинг MPA по идентификатору.
+     *
+     * @param id Идентификатор рейтинга.
+     * @return Копия рейтинга или пустой Optional, если рейтинга нет.
+     */
+    public Optional<Mpa> findMpa(int id) {
+        Mpa[] mpaById = snapshot.mpaById();
+        if (id < 0 || id >= mpaById.length || mpaById[id] == null) {
+            return Optional.empty();
+        }
+        return Optional.of(copyOf(mpaById[id]));
+    }
+
+    /**
+     * Возвращает все рейтинги MPA, упорядоченные по идентификатору.
+     *
+     * @return Список копий рейтингов.
+     */
+    public List<Mpa> findAllMpa() {
+        List<Mpa> result = new ArrayList<>();
+        for (Mpa mpa : snapshot.mpaById()) {
+            if (mpa != null) {
+                result.add(copyOf(mpa));
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Находит жанр по идентификатору.
+     *
+     * @param id Идентификатор жанра.
+     * @return Копия жанра или пустой Optional, если жанра нет.
+     */
+    public Optional<Genre> findGenre(int id) {
+        Genre[] genresById = snapshot.genresById();
+        if (id < 0 || id >= genresById.length || genresById[id] == null) {
+            return Optional.empty();
+        }
+        return Optional.of(copyOf(genresById[id]));
+    }
+
+    /**
+     * Возвращает все жанры, упорядоченные по идентификатору.
+     *
+     * @return Список копий жанров.
+     */
+    public List<Genre> findAllGenres() {
+        List<Genre> result = new ArrayList<>();
+        for (Genre genre : snapshot.genresById()) {
+            if (genre != null) {
+                result.add(copyOf(genre));
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private static Mpa copyOf(Mpa source) {
+        Mpa mpa = new Mpa();
+        mpa.setId(source.getId());
+        mpa.setName(source.getName());
+        return mpa;
+    }
+
+    private static Genre copyOf(Genre source) {
+        Genre genre = new Genre();
+        genre.setId(source.getId());
+        genre.setName(source.getName());
+        return genre;
+    }
+
+    private record Snapshot(Mpa[] mpaById, Genre[] genresById) {
+    }
+}
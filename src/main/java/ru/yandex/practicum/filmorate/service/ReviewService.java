@@ -4,10 +4,14 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.ReviewCursor;
 import ru.yandex.practicum.filmorate.storage.ReviewStorage;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Сервисный класс для управления отзывами на фильмы.
@@ -18,6 +22,8 @@ import java.util.List;
 @Service
 @RequiredArgsConstructor
 public class ReviewService {
+    private static final int STREAM_CHUNK_SIZE = 500;
+
     private final ReviewStorage reviewDbStorage;
     private final UserDbService userDbService;
     private final FilmDbService filmDbService;
@@ -45,6 +51,40 @@ public class ReviewService {
         return reviewDbStorage.getReviewsForFilm(filmId, count);
     }
 
+    /**
+     * Получает страницу отзывов, упорядоченных по полезности, следующих за позицией курсора.
+     *
+     * @param filmId идентификатор фильма, null - среди всех отзывов
+     * @param cursor курсор, полученный вместе с предыдущей страницей, null - первая страница
+     * @param limit  размер страницы, по умолчанию {@link FieldsValidatorService#DEFAULT_PAGE_SIZE}
+     * @return страница отзывов
+     * @throws ValidationException если курсор или размер страницы некорректны
+     */
+    public List<Review> getReviewsPage(Long filmId, String cursor, Integer limit) {
+        int pageSize = Optional.ofNullable(limit).orElse(FieldsValidatorService.DEFAULT_PAGE_SIZE);
+        FieldsValidatorService.validateReviewPage(pageSize);
+        ReviewCursor after = cursor == null ? null : ReviewCursor.decode(cursor);
+        return reviewDbStorage.getReviewsPage(filmId, after, pageSize);
+    }
+
+    /**
+     * Передает в обработчик все отзывы в порядке полезности, читая их из хранилища страницами.
+     *
+     * @param filmId идентификатор фильма, null - все отзывы
+     * @param action обработчик, вызываемый для каждого отзыва
+     */
+    public void forEachReview(Long filmId, Consumer<Review> action) {
+        ReviewCursor after = null;
+        List<Review> page;
+        do {
+            page = reviewDbStorage.getReviewsPage(filmId, after, STREAM_CHUNK_SIZE);
+            page.forEach(action);
+            if (!page.isEmpty()) {
+                after = ReviewCursor.of(page.getLast());
+            }
+        } while (page.size() == STREAM_CHUNK_SIZE);
+    }
+
     /**
      * Добавляет новый отзыв.
      *
@@ -56,8 +96,8 @@ public class ReviewService {
         if (review.getUserId() <= 0 || review.getFilmId() <= 0) {
             throw new NotFoundException("ID must be positive");
         }
-        filmDbService.findById(review.getFilmId());
-        userDbService.findById(review.getUserId());
+        filmDbService.checkFilmId(review.getFilmId());
+        userDbService.checkUserId(review.getUserId());
         return reviewDbStorage.addReview(review);
     }
 
@@ -79,7 +119,7 @@ public class ReviewService {
             review.setFilmId(filmId);
             review.setUseful(0);
         }
-        userDbService.findById(review.getUserId());
+        userDbService.checkUserId(review.getUserId());
         return reviewDbStorage.updateReview(review);
     }
 
@@ -151,6 +191,6 @@ public class ReviewService {
      */
     private void checkId(Long reviewId, Long userId) {
         reviewDbStorage.getReview(reviewId);
-        userDbService.findById(userId);
+        userDbService.checkUserId(userId);
     }
 }
@@ -1,9 +1,12 @@
 package ru.yandex.practicum.filmorate.service;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dal.EventJournal;
 import ru.yandex.practicum.filmorate.dal.HistoryDbStorage;
+import ru.yandex.practicum.filmorate.dal.IdRegistry;
 import ru.yandex.practicum.filmorate.dal.UserDbStorage;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
@@ -11,9 +14,16 @@ import ru.yandex.practicum.filmorate.model.Event;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.model.enums.EventTypes;
 import ru.yandex.practicum.filmorate.model.enums.OperationTypes;
+import ru.yandex.practicum.filmorate.storage.FriendshipGraph;
+import ru.yandex.practicum.filmorate.storage.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.RecommendationEngine;
+import ru.yandex.practicum.filmorate.storage.ReviewIndex;
+import ru.yandex.practicum.filmorate.storage.TimelineStore;
+import ru.yandex.practicum.filmorate.storage.UserLikesIndex;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Сервис для работы с пользователями в базе данных.
@@ -24,9 +34,29 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class UserDbService {
 
+    private static final int STREAM_CHUNK_SIZE = 500;
+
     private final UserFieldsDbValidatorService userDbValidator;
     private final UserDbStorage userDbStorage;
+    private final EventJournal eventJournal;
+    private final PopularityLeaderboard popularityLeaderboard;
+    private final UserLikesIndex userLikesIndex;
+    private final RecommendationEngine recommendationEngine;
+    private final FriendshipGraph friendshipGraph;
     private final HistoryDbStorage historyDbStorage;
+    private final TimelineStore timelineStore;
+    private final ReviewIndex reviewIndex;
+    private final IdRegistry idRegistry;
+
+    /**
+     * Заполняет граф дружбы данными из базы при старте приложения и по нему
+     * собирает ленты друзей из последних действий авторов.
+     */
+    @PostConstruct
+    public void initFriendshipGraph() {
+        friendshipGraph.rebuild(userDbStorage.getFriendIdsByUser());
+        timelineStore.rebuild((authorId, limit) -> historyDbStorage.getEventsPage(authorId, Long.MAX_VALUE, limit));
+    }
 
     /**
      * Возвращает список всех пользователей.
@@ -37,6 +67,38 @@ public class UserDbService {
         return userDbStorage.getAll();
     }
 
+    /**
+     * Возвращает страницу пользователей, упорядоченных по идентификатору.
+     *
+     * @param after Идентификатор последнего пользователя предыдущей страницы, по умолчанию 0.
+     * @param limit Размер страницы, по умолчанию {@link FieldsValidatorService#DEFAULT_PAGE_SIZE}.
+     * @return Страница пользователей.
+     * @throws ValidationException Если параметры страницы некорректны.
+     */
+    public List<User> getPage(Long after, Integer limit) {
+        long afterId = Optional.ofNullable(after).orElse(0L);
+        int pageSize = Optional.ofNullable(limit).orElse(FieldsValidatorService.DEFAULT_PAGE_SIZE);
+        FieldsValidatorService.validatePage(afterId, pageSize);
+        return userDbStorage.getPage(afterId, pageSize);
+    }
+
+    /**
+     * Последовательно передает всех пользователей в обработчик, загружая их порциями фиксированного размера.
+     *
+     * @param action Обработчик, вызываемый для каждого пользователя в порядке возрастания идентификатора.
+     */
+    public void forEachUser(Consumer<User> action) {
+        long after = 0;
+        List<User> page;
+        do {
+            page = userDbStorage.getPage(after, STREAM_CHUNK_SIZE);
+            page.forEach(action);
+            if (!page.isEmpty()) {
+                after = page.getLast().getId();
+            }
+        } while (page.size() == STREAM_CHUNK_SIZE);
+    }
+
     /**
      * Создает нового пользователя.
      *
@@ -45,7 +107,9 @@ public class UserDbService {
      * @throws ValidationException Если данные пользователя некорректны.
      */
     public User createUser(User user) {
-        return userDbStorage.createUser(user);
+        User created = userDbStorage.createUser(user);
+        idRegistry.register(IdRegistry.Table.USERS, created.getId());
+        return created;
     }
 
     /**
@@ -74,10 +138,10 @@ public class UserDbService {
      */
     public void addFriend(Long userId, Long friendId) {
         log.info("Проверка существования пользователей: {} и {}", userId, friendId);
-        findById(userId).orElseThrow(() -> new NotFoundException("Пользователь с id " + userId +
-                " не найден"));
-        findById(friendId).orElseThrow(() -> new NotFoundException("Пользователь с id " + friendId + " не найден"));
+        checkUserId(userId);
+        checkUserId(friendId);
         userDbStorage.addFriend(userId, friendId);
+        friendshipGraph.addFriend(userId, friendId);
         log.info("Пользователь с id {} добавил в друзья пользователя с id {}.", userId, friendId);
         saveHistory(friendId, userId, OperationTypes.ADD);
     }
@@ -90,8 +154,8 @@ public class UserDbService {
      * @throws NotFoundException Если пользователь с указанным идентификатором не найден.
      */
     public List<User> getUserFriends(Long id) {
-        findById(id).orElseThrow(() -> new NotFoundException("Пользователь с id " + id + " не найден"));
-        return userDbStorage.getUserFriends(id);
+        checkUserId(id);
+        return userDbStorage.findByIds(friendshipGraph.getFriends(id));
     }
 
     /**
@@ -103,10 +167,10 @@ public class UserDbService {
      */
     public void deleteFriend(Long userId, Long friendId) {
         log.info("Проверка существования пользователей: {} и {}", userId, friendId);
-        findById(userId).orElseThrow(() -> new NotFoundException("Пользователь с id " + userId +
-                " не найден"));
-        findById(friendId).orElseThrow(() -> new NotFoundException("Пользователь с id " + friendId + " не найден"));
+        checkUserId(userId);
+        checkUserId(friendId);
         userDbStorage.deleteFriend(userId, friendId);
+        friendshipGraph.removeFriend(userId, friendId);
         log.info("Пользователь с id {} удален из друзей пользователя с id {}.", userId, friendId);
         saveHistory(friendId, userId, OperationTypes.REMOVE);
     }
@@ -121,6 +185,16 @@ public class UserDbService {
         return userDbStorage.findById(id);
     }
 
+    /**
+     * Проверяет существование пользователя без загрузки его данных.
+     *
+     * @param id Идентификатор пользователя.
+     * @throws NotFoundException Если пользователь с указанным идентификатором не найден.
+     */
+    public void checkUserId(long id) {
+        userDbValidator.checkUserId(id);
+    }
+
     /**
      * Получает пользователя по его идентификатору.
      *
@@ -134,13 +208,17 @@ public class UserDbService {
 
     /**
      * Возвращает список общих друзей между двумя пользователями.
+     * Общие друзья находятся пересечением списков друзей в {@link FriendshipGraph}.
      *
      * @param userId  Идентификатор первого пользователя.
      * @param otherId Идентификатор второго пользователя.
      * @return Список общих друзей между двумя пользователями.
+     * @throws NotFoundException Если один из пользователей не найден.
      */
     public List<User> getCommonFriends(Long userId, Long otherId) {
-        return userDbStorage.getCommonFriends(userId, otherId);
+        checkUserId(userId);
+        checkUserId(otherId);
+        return userDbStorage.findByIds(friendshipGraph.getCommonFriends(userId, otherId));
     }
 
     /**
@@ -149,7 +227,15 @@ public class UserDbService {
      * @param userId Идентификатор пользователя.
      */
     public void deleteUser(long userId) {
+        List<Long> likedFilmIds = userDbStorage.findLikedFilmIds(userId);
         userDbStorage.deleteUser(userId);
+        idRegistry.unregister(IdRegistry.Table.USERS, userId);
+        likedFilmIds.forEach(popularityLeaderboard::removeLike);
+        userLikesIndex.removeUser(userId);
+        recommendationEngine.removeUser(userId);
+        friendshipGraph.removeUser(userId);
+        timelineStore.removeUser(userId);
+        reviewIndex.removeUser(userId);
         log.info("Пользователь с id {} удален.", userId);
     }
 
@@ -160,8 +246,8 @@ public class UserDbService {
      * операцию, выполненную пользователем в контексте управления друзьями (например, добавление
      * или удаление друга). Событие включает идентификатор пользователя, временную метку,
      * тип события (в данном случае {@link EventTypes#FRIEND}), тип операции и идентификатор
-     * сущности, с которой связано событие. Метод использует {@link HistoryDbStorage} для
-     * добавления события в историю.
+     * сущности, с которой связано событие. Метод передает событие в {@link EventJournal},
+     * который сохраняет его в историю.
      * </p>
      *
      * @param id             Идентификатор сущности, с которой связано событие (например, идентификатор друга).
@@ -169,7 +255,7 @@ public class UserDbService {
      * @param operationTypes Тип операции, связанной с событием (например, добавление или удаление друга).
      */
     private void saveHistory(Long id, Long userId, OperationTypes operationTypes) {
-        historyDbStorage.addEvent(Event.builder()
+        eventJournal.append(Event.builder()
                 .userId(userId)
                 .timestamp(System.currentTimeMillis())
                 .eventType(EventTypes.FRIEND)
@@ -1,10 +1,9 @@
 package ru.yandex.practicum.filmorate.service;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
-import ru.yandex.practicum.filmorate.dal.BaseRepository;
+import ru.yandex.practicum.filmorate.dal.IdRegistry;
 import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
 
@@ -12,19 +11,16 @@ import ru.yandex.practicum.filmorate.model.User;
 /**
  * Сервис для валидации полей пользователя в базе данных.
  * <p>
- * Данный класс наследуется от BaseRepository и предоставляет методы
- * для проверки корректности данных пользователя при его создании и обновлении.
+ * Данный класс предоставляет методы для проверки корректности данных пользователя при его создании и обновлении.
+ * Существование пользователя проверяется по {@link IdRegistry}.
  * </p>
  */
 @Slf4j
 @Service
-public class UserFieldsDbValidatorService extends BaseRepository<User> {
+@RequiredArgsConstructor
+public class UserFieldsDbValidatorService {
 
-    private static final String FIND_BY_ID = "SELECT * FROM USERS WHERE USER_ID =?";
-
-    public UserFieldsDbValidatorService(JdbcTemplate jdbc, RowMapper<User> mapper) {
-        super(jdbc, mapper);
-    }
+    private final IdRegistry idRegistry;
 
     /**
      * Проверяет корректность полей пользователя при его обновлении.
@@ -41,8 +37,20 @@ public class UserFieldsDbValidatorService extends BaseRepository<User> {
      */
     protected void checkUserFieldsOnUpdate(User updatedUser) {
         log.info("Проверка полей пользователя при его обновлении; {}", updatedUser.getLogin());
-        if (findOne(FIND_BY_ID, updatedUser.getId()).isEmpty()) {
+        if (!idRegistry.exists(IdRegistry.Table.USERS, updatedUser.getId())) {
             throw new NotFoundException("Польователь с id = " + updatedUser.getId() + " не найден");
         }
     }
+
+    /**
+     * Проверяет существование пользователя по его идентификатору.
+     *
+     * @param id Идентификатор пользователя.
+     * @throws NotFoundException Если пользователь с указанным идентификатором не найден.
+     */
+    public void checkUserId(long id) {
+        if (!idRegistry.exists(IdRegistry.Table.USERS, id)) {
+            throw new NotFoundException("Пользователь с id " + id + " не найден");
+        }
+    }
 }
@@ -0,0 +1,117 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Фильтр Блума для идентификаторов.
+ * <p>
+ * Отвечает на вопрос "мог ли идентификатор быть добавлен": ответ "нет" точный, ответ "да" ошибочен с
+ * вероятностью не выше заданной, пока число добавленных идентификаторов не превышает расчетное. Удаление
+ * не поддерживается - удаленные идентификаторы продолжают давать ответ "да" до перестроения фильтра.
+ * </p>
+ * <p>
+ * Размер битового массива и число хеш-функций вычисляются по расчетному числу идентификаторов n и
+ * допустимой вероятности ложного срабатывания p: m = -n ln p / (ln 2)^2 бит, k = m / n ln 2.
+ * Добавление и проверка потокобезопасны и не блокируются.
+ * </p>
+ */
+public class BloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final AtomicLongArray words;
+    private final long bitSize;
+    private final int hashCount;
+
+    /**
+     * @param expectedIds       Расчетное число идентификаторов.
+     * @param falsePositiveRate Допустимая вероятность ложного срабатывания, от 0 до 1.
+     * @throws IllegalArgumentException Если параметры вне допустимых диапазонов.
+     */
+    public BloomFilter(long expectedIds, double falsePositiveRate) {
+        if (expectedIds <= 0) {
+            throw new IllegalArgumentException("Расчетное число идентификаторов должно быть положительным");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Вероятность ложного срабатывания должна быть от 0 до 1");
+        }
+        long bits = (long) Math.ceil(-expectedIds * Math.log(falsePositiveRate) / (LN2 * LN2));
+        int wordCount = Math.toIntExact((bits + 63) / 64);
+        this.words = new AtomicLongArray(wordCount);
+        this.bitSize = (long) wordCount * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / expectedIds * LN2));
+    }
+
+    /**
+     * Добавляет идентификатор.
+     *
+     * @param id Идентификатор.
+     */
+    public void put(long id) {
+        long h1 = mix(id);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitSize);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+    }
+
+    /**
+     * Проверяет, мог ли идентификатор быть добавлен.
+     *
+     * @param id Идентификатор.
+     * @return false, если идентификатор точно не добавлялся, иначе true.
+     */
+    public boolean mightContain(long id) {
+        long h1 = mix(id);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitSize);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Оценивает текущую вероятность ложного срабатывания по доле установленных битов.
+     *
+     * @return Оценка вероятности ложного срабатывания.
+     */
+    public double estimateFalsePositiveRate() {
+        long setBits = 0;
+        for (int i = 0; i < words.length(); i++) {
+            setBits += Long.bitCount(words.get(i));
+        }
+        return Math.pow((double) setBits / bitSize, hashCount);
+    }
+
+    /**
+     * @return Размер битового массива в битах.
+     */
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    /**
+     * @return Число хеш-функций.
+     */
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
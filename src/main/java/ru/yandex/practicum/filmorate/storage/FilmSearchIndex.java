@@ -0,0 +1,254 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Поисковый индекс фильмов в памяти приложения.
+ * <p>
+ * Названия фильмов и имена режиссеров хранятся в нижнем регистре вместе с инвертированными индексами
+ * триграмм: для каждой последовательности из трех символов - множество идентификаторов, в тексте которых
+ * она встречается. Поиск подстроки пересекает множества триграмм запроса и проверяет только оставшихся
+ * кандидатов. Запросы короче трех символов проверяются по всем текстам индекса без обращения к базе.
+ * </p>
+ * <p>
+ * Индекс заполняется при старте из базы данных и обновляется при добавлении, изменении и удалении фильмов
+ * и режиссеров. Чтение и запись разделены блокировкой {@link ReadWriteLock}.
+ * </p>
+ */
+@Component
+public class FilmSearchIndex {
+
+    private static final int GRAM_SIZE = 3;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, String> titles = new HashMap<>();
+    private final Map<String, Set<Long>> titleGrams = new HashMap<>();
+    private final Map<Long, String> directorNames = new HashMap<>();
+    private final Map<String, Set<Long>> directorGrams = new HashMap<>();
+    private final Map<Long, Set<Long>> filmsByDirector = new HashMap<>();
+    private final Map<Long, Set<Long>> directorsByFilm = new HashMap<>();
+
+    /**
+     * Полностью перестраивает индекс по переданным данным.
+     *
+     * @param films         Названия фильмов по идентификатору фильма.
+     * @param directors     Имена режиссеров по идентификатору режиссера.
+     * @param filmDirectors Идентификаторы режиссеров по идентификатору фильма.
+     */
+    public void rebuild(Map<Long, String> films, Map<Long, String> directors, Map<Long, Set<Long>> filmDirectors) {
+        lock.writeLock().lock();
+        try {
+            titles.clear();
+            titleGrams.clear();
+            directorNames.clear();
+            directorGrams.clear();
+            filmsByDirector.clear();
+            directorsByFilm.clear();
+            directors.forEach(this::indexDirector);
+            films.forEach((filmId, name) -> indexFilm(filmId, name, filmDirectors.getOrDefault(filmId, Set.of())));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет фильм в индекс или заменяет его название и режиссеров.
+     *
+     * @param filmId      Идентификатор фильма.
+     * @param name        Название фильма.
+     * @param directorIds Идентификаторы режиссеров фильма.
+     */
+    public void putFilm(long filmId, String name, Set<Long> directorIds) {
+        lock.writeLock().lock();
+        try {
+            unindexFilm(filmId);
+            indexFilm(filmId, name, directorIds);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Удаляет фильм из индекса.
+     *
+     * @param filmId Идентификатор фильма.
+     */
+    public void removeFilm(long filmId) {
+        lock.writeLock().lock();
+        try {
+            unindexFilm(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет режиссера в индекс или заменяет его имя.
+     *
+     * @param directorId Идентификатор режиссера.
+     * @param name       Имя режиссера.
+     */
+    public void putDirector(long directorId, String name) {
+        lock.writeLock().lock();
+        try {
+            unindexText(directorId, directorNames.remove(directorId), directorGrams);
+            indexDirector(directorId, name);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Удаляет режиссера из индекса вместе с его связями с фильмами.
+     *
+     * @param directorId Идентификатор режиссера.
+     */
+    public void removeDirector(long directorId) {
+        lock.writeLock().lock();
+        try {
+            unindexText(directorId, directorNames.remove(directorId), directorGrams);
+            Set<Long> filmIds = filmsByDirector.remove(directorId);
+            if (filmIds != null) {
+                for (Long filmId : filmIds) {
+                    Set<Long> directorIds = directorsByFilm.get(filmId);
+                    if (directorIds != null) {
+                        directorIds.remove(directorId);
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Находит фильмы, название которых содержит подстроку.
+     *
+     * @param query Подстрока в нижнем регистре.
+     * @return Идентификаторы найденных фильмов.
+     */
+    public Set<Long> findByTitle(String query) {
+        lock.readLock().lock();
+        try {
+            return find(query, titles, titleGrams);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Находит фильмы, у которых имя хотя бы одного режиссера содержит подстроку.
+     *
+     * @param query Подстрока в нижнем регистре.
+     * @return Идентификаторы найденных фильмов.
+     */
+    public Set<Long> findByDirector(String query) {
+        lock.readLock().lock();
+        try {
+            Set<Long> filmIds = new HashSet<>();
+            for (Long directorId : find(query, directorNames, directorGrams)) {
+                filmIds.addAll(filmsByDirector.getOrDefault(directorId, Set.of()));
+            }
+            return filmIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void indexFilm(long filmId, String name, Set<Long> directorIds) {
+        String text = normalize(name);
+        if (text != null) {
+            titles.put(filmId, text);
+            indexText(filmId, text, titleGrams);
+        }
+        directorsByFilm.put(filmId, new HashSet<>(directorIds));
+        for (Long directorId : directorIds) {
+            filmsByDirector.computeIfAbsent(directorId, id -> new HashSet<>()).add(filmId);
+        }
+    }
+
+    private void unindexFilm(long filmId) {
+        unindexText(filmId, titles.remove(filmId), titleGrams);
+        Set<Long> directorIds = directorsByFilm.remove(filmId);
+        if (directorIds != null) {
+            for (Long directorId : directorIds) {
+                Set<Long> filmIds = filmsByDirector.get(directorId);
+                if (filmIds != null) {
+                    filmIds.remove(filmId);
+                }
+            }
+        }
+    }
+
+    private void indexDirector(long directorId, String name) {
+        String text = normalize(name);
+        if (text != null) {
+            directorNames.put(directorId, text);
+            indexText(directorId, text, directorGrams);
+        }
+    }
+
+    private static void indexText(long id, String text, Map<String, Set<Long>> grams) {
+        for (String gram : grams(text)) {
+            grams.computeIfAbsent(gram, key -> new HashSet<>()).add(id);
+        }
+    }
+
+    private static void unindexText(long id, String text, Map<String, Set<Long>> grams) {
+        if (text == null) {
+            return;
+        }
+        for (String gram : grams(text)) {
+            Set<Long> ids = grams.get(gram);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    grams.remove(gram);
+                }
+            }
+        }
+    }
+
+    private static Set<Long> find(String query, Map<Long, String> texts, Map<String, Set<Long>> grams) {
+        Set<Long> result = new HashSet<>();
+        if (query.length() < GRAM_SIZE) {
+            texts.forEach((id, text) -> {
+                if (text.contains(query)) {
+                    result.add(id);
+                }
+            });
+            return result;
+        }
+        List<Set<Long>> postings = new ArrayList<>();
+        for (String gram : grams(query)) {
+            Set<Long> ids = grams.get(gram);
+            if (ids == null) {
+                return result;
+            }
+            postings.add(ids);
+        }
+        postings.sort(Comparator.comparingInt(Set::size));
+        for (Long id : postings.getFirst()) {
+            if (texts.get(id).contains(query)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_SIZE <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM_SIZE));
+        }
+        return grams;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? null : text.toLowerCase();
+    }
+}
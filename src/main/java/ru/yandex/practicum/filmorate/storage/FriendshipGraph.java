@@ -0,0 +1,232 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Граф дружбы пользователей в памяти приложения.
+ * <p>
+ * Дружба односторонняя: для каждого пользователя хранится отсортированный массив идентификаторов его друзей
+ * и отсортированный массив идентификаторов пользователей, добавивших его в друзья (нужен при удалении
+ * пользователя и для рассылки событий в ленты друзей). Массивы заменяются целиком при каждом изменении, поэтому чтение идет без блокировок,
+ * а запись сериализуется на объекте графа. Количество друзей - длина массива, общие друзья - слияние
+ * двух отсортированных массивов.
+ * </p>
+ * <p>
+ * Граф заполняется при старте из таблицы FRIENDSHIP и обновляется при добавлении и удалении друзей
+ * и пользователей; база данных используется только для сохранности данных.
+ * </p>
+ */
+@Component
+public class FriendshipGraph {
+
+    private static final long[] EMPTY = new long[0];
+
+    private final ConcurrentMap<Long, long[]> friendsByUser = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, long[]> followersByUser = new ConcurrentHashMap<>();
+
+    /**
+     * Полностью перестраивает граф по переданным данным.
+     *
+     * @param friends Идентификаторы друзей по идентификатору пользователя.
+     */
+    public synchronized void rebuild(Map<Long, ? extends Collection<Long>> friends) {
+        friendsByUser.clear();
+        followersByUser.clear();
+        Map<Long, List<Long>> followers = new HashMap<>();
+        friends.forEach((userId, friendIds) -> {
+            long[] sorted = friendIds.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+            if (sorted.length == 0) {
+                return;
+            }
+            friendsByUser.put(userId, sorted);
+            for (long friendId : sorted) {
+                followers.computeIfAbsent(friendId, id -> new ArrayList<>()).add(userId);
+            }
+        });
+        followers.forEach((userId, followerIds) ->
+                followersByUser.put(userId, followerIds.stream().mapToLong(Long::longValue).sorted().toArray()));
+    }
+
+    /**
+     * Добавляет друга пользователю.
+     *
+     * @param userId   Идентификатор пользователя.
+     * @param friendId Идентификатор друга.
+     */
+    public synchronized void addFriend(long userId, long friendId) {
+        friendsByUser.put(userId, insert(friendsByUser.getOrDefault(userId, EMPTY), friendId));
+        followersByUser.put(friendId, insert(followersByUser.getOrDefault(friendId, EMPTY), userId));
+    }
+
+    /**
+     * Удаляет друга пользователя.
+     *
+     * @param userId   Идентификатор пользователя.
+     * @param friendId Идентификатор друга.
+     */
+    public synchronized void removeFriend(long userId, long friendId) {
+        replace(friendsByUser, userId, remove(friendsByUser.getOrDefault(userId, EMPTY), friendId));
+        replace(followersByUser, friendId, remove(followersByUser.getOrDefault(friendId, EMPTY), userId));
+    }
+
+    /**
+     * Удаляет пользователя из графа вместе со всеми его дружбами.
+     *
+     * @param userId Идентификатор пользователя.
+     */
+    public synchronized void removeUser(long userId) {
+        long[] friends = friendsByUser.remove(userId);
+        if (friends != null) {
+            for (long friendId : friends) {
+                replace(followersByUser, friendId, remove(followersByUser.getOrDefault(friendId, EMPTY), userId));
+            }
+        }
+        long[] followers = followersByUser.remove(userId);
+        if (followers != null) {
+            for (long followerId : followers) {
+                replace(friendsByUser, followerId, remove(friendsByUser.getOrDefault(followerId, EMPTY), userId));
+            }
+        }
+    }
+
+    /**
+     * Возвращает идентификаторы друзей пользователя.
+     *
+     * @param userId Идентификатор пользователя.
+     * @return Идентификаторы друзей по возрастанию.
+     */
+    public List<Long> getFriends(long userId) {
+        return toList(friendsByUser.getOrDefault(userId, EMPTY));
+    }
+
+    /**
+     * Возвращает идентификаторы друзей пользователя без копирования.
+     *
+     * @param userId Идентификатор пользователя.
+     * @return Отсортированный массив идентификаторов друзей; массив нельзя изменять.
+     */
+    public long[] getFriendIds(long userId) {
+        return friendsByUser.getOrDefault(userId, EMPTY);
+    }
+
+    /**
+     * Возвращает идентификаторы пользователей, у которых есть хотя бы один друг.
+     *
+     * @return Неизменяемое представление множества пользователей.
+     */
+    public Set<Long> getUsersWithFriends() {
+        return Collections.unmodifiableSet(friendsByUser.keySet());
+    }
+
+    /**
+     * Возвращает количество друзей пользователя.
+     *
+     * @param userId Идентификатор пользователя.
+     * @return Количество друзей.
+     */
+    public int getFriendCount(long userId) {
+        return friendsByUser.getOrDefault(userId, EMPTY).length;
+    }
+
+    /**
+     * Проверяет, добавил ли пользователь другого пользователя в друзья.
+     *
+     * @param userId   Идентификатор пользователя.
+     * @param friendId Идентификатор предполагаемого друга.
+     * @return true, если friendId есть среди друзей userId.
+     */
+    public boolean isFriend(long userId, long friendId) {
+        return Arrays.binarySearch(friendsByUser.getOrDefault(userId, EMPTY), friendId) >= 0;
+    }
+
+    /**
+     * Возвращает идентификаторы пользователей, добавивших пользователя в друзья.
+     *
+     * @param userId Идентификатор пользователя.
+     * @return Отсортированный массив идентификаторов подписчиков; массив нельзя изменять.
+     */
+    public long[] getFollowers(long userId) {
+        return followersByUser.getOrDefault(userId, EMPTY);
+    }
+
+    /**
+     * Возвращает количество пользователей, добавивших пользователя в друзья.
+     *
+     * @param userId Идентификатор пользователя.
+     * @return Количество подписчиков.
+     */
+    public int getFollowerCount(long userId) {
+        return followersByUser.getOrDefault(userId, EMPTY).length;
+    }
+
+    /**
+     * Находит общих друзей двух пользователей.
+     *
+     * @param userId  Идентификатор первого пользователя.
+     * @param otherId Идентификатор второго пользователя.
+     * @return Идентификаторы общих друзей по возрастанию.
+     */
+    public List<Long> getCommonFriends(long userId, long otherId) {
+        long[] first = friendsByUser.getOrDefault(userId, EMPTY);
+        long[] second = friendsByUser.getOrDefault(otherId, EMPTY);
+        List<Long> common = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] == second[j]) {
+                common.add(first[i]);
+                i++;
+                j++;
+            } else if (first[i] < second[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return common;
+    }
+
+    private static List<Long> toList(long[] values) {
+        List<Long> result = new ArrayList<>(values.length);
+        for (long value : values) {
+            result.add(value);
+        }
+        return result;
+    }
+
+    private static long[] insert(long[] values, long value) {
+        int position = Arrays.binarySearch(values, value);
+        if (position >= 0) {
+            return values;
+        }
+        position = -position - 1;
+        long[] result = new long[values.length + 1];
+        System.arraycopy(values, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(values, position, result, position + 1, values.length - position);
+        return result;
+    }
+
+    private static long[] remove(long[] values, long value) {
+        int position = Arrays.binarySearch(values, value);
+        if (position < 0) {
+            return values;
+        }
+        long[] result = new long[values.length - 1];
+        System.arraycopy(values, 0, result, 0, position);
+        System.arraycopy(values, position + 1, result, position, values.length - position - 1);
+        return result;
+    }
+
+    private static void replace(Map<Long, long[]> map, long key, long[] values) {
+        if (values.length == 0) {
+            map.remove(key);
+        } else {
+            map.put(key, values);
+        }
+    }
+}
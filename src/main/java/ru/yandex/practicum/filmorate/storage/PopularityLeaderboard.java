@@ -0,0 +1,224 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Рейтинг популярности фильмов в памяти приложения.
+ * <p>
+ * Фильмы хранятся в конкурентных упорядоченных множествах с ключом (количество лайков по убыванию,
+ * идентификатор фильма по возрастанию): общий рейтинг и отдельные рейтинги по каждому жанру и году выхода.
+ * Рейтинг заполняется при старте из базы данных и далее обновляется по событиям добавления и удаления
+ * лайков и фильмов, поэтому выборка самых популярных фильмов не обращается к базе.
+ * </p>
+ * <p>
+ * Изменения одного фильма выполняются под блокировкой его записи в {@link ConcurrentHashMap}: сначала
+ * добавляется новая позиция, затем удаляется старая, поэтому читатель может кратко увидеть фильм дважды
+ * (повторы отбрасываются при выборке), но не пропустит его.
+ * </p>
+ */
+@Component
+public class PopularityLeaderboard {
+
+    private static final Comparator<Rank> RANK_ORDER = Comparator.comparingLong(Rank::likes).reversed()
+            .thenComparingLong(Rank::filmId);
+
+    private final ConcurrentSkipListSet<Rank> board = new ConcurrentSkipListSet<>(RANK_ORDER);
+    private final ConcurrentMap<Integer, ConcurrentSkipListSet<Rank>> genreBoards = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, ConcurrentSkipListSet<Rank>> yearBoards = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, FilmStats> films = new ConcurrentHashMap<>();
+
+    /**
+     * Полностью перестраивает рейтинг по переданным данным.
+     * Вызывается при старте приложения и при восстановлении после проверки согласованности.
+     *
+     * @param stats Данные о всех фильмах.
+     */
+    public synchronized void rebuild(Collection<FilmStats> stats) {
+        films.clear();
+        board.clear();
+        genreBoards.clear();
+        yearBoards.clear();
+        for (FilmStats filmStats : stats) {
+            films.put(filmStats.filmId(), filmStats);
+            index(filmStats);
+        }
+    }
+
+    /**
+     * Добавляет фильм в рейтинг или обновляет его год выхода и жанры, сохраняя количество лайков.
+     *
+     * @param filmId   Идентификатор фильма.
+     * @param year     Год выхода фильма, может быть null.
+     * @param genreIds Идентификаторы жанров фильма.
+     */
+    public void putFilm(long filmId, Integer year, Set<Integer> genreIds) {
+        films.compute(filmId, (id, old) -> {
+            FilmStats updated = new FilmStats(filmId, old == null ? 0 : old.likes(), year, Set.copyOf(genreIds));
+            index(updated);
+            if (old != null) {
+                unindex(old, updated);
+            }
+            return updated;
+        });
+    }
+
+    /**
+     * Удаляет фильм из рейтинга.
+     *
+     * @param filmId Идентификатор фильма.
+     */
+    public void removeFilm(long filmId) {
+        films.computeIfPresent(filmId, (id, old) -> {
+            unindex(old, null);
+            return null;
+        });
+    }
+
+    /**
+     * Увеличивает количество лайков фильма на один.
+     *
+     * @param filmId Идентификатор фильма.
+     */
+    public void addLike(long filmId) {
+        changeLikes(filmId, 1);
+    }
+
+    /**
+     * Уменьшает количество лайков фильма на один.
+     *
+     * @param filmId Идентификатор фильма.
+     */
+    public void removeLike(long filmId) {
+        changeLikes(filmId, -1);
+    }
+
+    /**
+     * Возвращает идентификаторы самых популярных фильмов.
+     *
+     * @param count   Максимальное количество фильмов, null - без ограничения.
+     * @param genreId Идентификатор жанра для фильтрации, null - без фильтра.
+     * @param year    Год выхода для фильтрации, null - без фильтра.
+     * @return Идентификаторы фильмов в порядке убывания количества лайков.
+     */
+    public List<Long> top(Integer count, Integer genreId, Integer year) {
+        Set<Rank> source;
+        if (genreId != null) {
+            source = genreBoards.getOrDefault(genreId, new ConcurrentSkipListSet<>(RANK_ORDER));
+        } else if (year != null) {
+            source = yearBoards.getOrDefault(year, new ConcurrentSkipListSet<>(RANK_ORDER));
+        } else {
+            source = board;
+        }
+        int limit = count == null ? Integer.MAX_VALUE : count;
+        Set<Long> result = new LinkedHashSet<>();
+        for (Rank rank : source) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (genreId != null && year != null) {
+                FilmStats stats = films.get(rank.filmId());
+                if (stats == null || !year.equals(stats.year())) {
+                    continue;
+                }
+            }
+            result.add(rank.filmId());
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Возвращает количество лайков фильма.
+     *
+     * @param filmId Идентификатор фильма.
+     * @return Количество лайков или 0, если фильма нет в рейтинге.
+     */
+    public long getLikes(long filmId) {
+        FilmStats stats = films.get(filmId);
+        return stats == null ? 0 : stats.likes();
+    }
+
+    /**
+     * Сравнивает рейтинг с данными из базы данных.
+     *
+     * @param expected Данные о всех фильмах, прочитанные из базы.
+     * @return Идентификаторы фильмов, для которых рейтинг расходится с базой.
+     */
+    public List<Long> findMismatches(Collection<FilmStats> expected) {
+        List<Long> mismatches = new ArrayList<>();
+        Set<Long> expectedIds = new HashSet<>();
+        for (FilmStats stats : expected) {
+            expectedIds.add(stats.filmId());
+            FilmStats actual = films.get(stats.filmId());
+            if (!stats.equals(actual) || !board.contains(new Rank(stats.likes(), stats.filmId()))) {
+                mismatches.add(stats.filmId());
+            }
+        }
+        for (Long filmId : films.keySet()) {
+            if (!expectedIds.contains(filmId)) {
+                mismatches.add(filmId);
+            }
+        }
+        return mismatches;
+    }
+
+    private void changeLikes(long filmId, long delta) {
+        films.computeIfPresent(filmId, (id, old) -> {
+            FilmStats updated = new FilmStats(filmId, old.likes() + delta, old.year(), old.genreIds());
+            index(updated);
+            unindex(old, updated);
+            return updated;
+        });
+    }
+
+    private void index(FilmStats stats) {
+        Rank rank = new Rank(stats.likes(), stats.filmId());
+        board.add(rank);
+        for (Integer genreId : stats.genreIds()) {
+            genreBoards.computeIfAbsent(genreId, id -> new ConcurrentSkipListSet<>(RANK_ORDER)).add(rank);
+        }
+        if (stats.year() != null) {
+            yearBoards.computeIfAbsent(stats.year(), id -> new ConcurrentSkipListSet<>(RANK_ORDER)).add(rank);
+        }
+    }
+
+    private void unindex(FilmStats old, FilmStats updated) {
+        Rank rank = new Rank(old.likes(), old.filmId());
+        boolean sameRank = updated != null && updated.likes() == old.likes();
+        if (!sameRank) {
+            board.remove(rank);
+        }
+        for (Integer genreId : old.genreIds()) {
+            if (!sameRank || !updated.genreIds().contains(genreId)) {
+                Set<Rank> genreBoard = genreBoards.get(genreId);
+                if (genreBoard != null) {
+                    genreBoard.remove(rank);
+                }
+            }
+        }
+        if (old.year() != null && (!sameRank || !old.year().equals(updated.year()))) {
+            Set<Rank> yearBoard = yearBoards.get(old.year());
+            if (yearBoard != null) {
+                yearBoard.remove(rank);
+            }
+        }
+    }
+
+    /**
+     * Данные о фильме, необходимые для рейтинга.
+     *
+     * @param filmId   Идентификатор фильма.
+     * @param likes    Количество лайков.
+     * @param year     Год выхода, может быть null.
+     * @param genreIds Идентификаторы жанров.
+     */
+    public record FilmStats(long filmId, long likes, Integer year, Set<Integer> genreIds) {
+    }
+
+    private record Rank(long likes, long filmId) {
+    }
+}
@@ -0,0 +1,426 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Рекомендации фильмов на основе лайков похожих пользователей (коллаборативная фильтрация).
+ * <p>
+ * Разреженная матрица «пользователь × фильм» хранится в двух направлениях: для каждого пользователя -
+ * отсортированный массив идентификаторов понравившихся фильмов, который заменяется целиком при изменении,
+ * для каждого фильма - конкурентное множество идентификаторов пользователей, которым он понравился. Лайк
+ * популярному фильму добавляет один элемент в множество и не копирует список всех лайкнувших.
+ * </p>
+ * <p>
+ * Изменения лайков одного пользователя выполняются атомарно внутри {@link ConcurrentHashMap#compute}
+ * по его идентификатору, поэтому лайки разных пользователей не блокируют друг друга, а чтение идет
+ * без блокировок. Изменения выполняются под блокировкой чтения, полная перестройка - под блокировкой
+ * записи, чтобы не смешивать старые и новые данные.
+ * </p>
+ * <p>
+ * Для пользователя находятся соседи - пользователи с хотя бы одним общим лайком, - и для каждого считается
+ * коэффициент Жаккара: размер пересечения лайков, деленный на размер объединения. Берутся
+ * {@code filmorate.recommendations.neighbours} самых похожих соседей, их фильмы, которые пользователю
+ * еще не понравились, получают сумму коэффициентов соседей, лайкнувших фильм, и возвращаются по убыванию
+ * этой суммы.
+ * </p>
+ * <p>
+ * Точный поиск соседей перебирает всех пользователей, лайкнувших те же фильмы, и для популярных фильмов
+ * становится дорогим. Поэтому для каждого пользователя также хранится MinHash-подпись лайков
+ * ({@code bands × rows} минимальных хешей), разбитая на {@code bands} полос по {@code rows} значений.
+ * Пользователи с совпадающей полосой попадают в одну корзину LSH, а вероятность совпадения хотя бы одной
+ * полосы растет с коэффициентом Жаккара. Если точный перебор затрагивает больше
+ * {@code filmorate.recommendations.exact-threshold} лайков, кандидаты в соседи берутся из корзин
+ * пользователя, а их сходство считается точно. Больше полос - выше полнота и дольше поиск,
+ * больше строк в полосе - меньше случайных кандидатов. При {@code bands = 0} всегда используется
+ * точный поиск.
+ * </p>
+ */
+@Component
+public class RecommendationEngine {
+
+    private static final long[] EMPTY = new long[0];
+    private static final long PRIME = 2_147_483_647L;
+    private static final long SEED = 42L;
+
+    private final int neighbours;
+    private final int bands;
+    private final int rows;
+    private final int exactThreshold;
+    private final long[] hashA;
+    private final long[] hashB;
+    private final ConcurrentMap<Long, long[]> filmsByUser = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Set<Long>> usersByFilm = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, int[]> signatures = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, long[]> bucketKeys = new ConcurrentHashMap<>();
+    private final List<ConcurrentMap<Long, Set<Long>>> buckets = new ArrayList<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public RecommendationEngine(@Value("${filmorate.recommendations.neighbours:20}") int neighbours,
+                                @Value("${filmorate.recommendations.lsh-bands:32}") int bands,
+                                @Value("${filmorate.recommendations.lsh-rows:2}") int rows,
+                                @Value("${filmorate.recommendations.exact-threshold:10000}") int exactThreshold) {
+        this.neighbours = neighbours;
+        this.bands = bands;
+        this.rows = rows;
+        this.exactThreshold = exactThreshold;
+        Random random = new Random(SEED);
+        hashA = new long[bands * rows];
+        hashB = new long[bands * rows];
+        for (int i = 0; i < hashA.length; i++) {
+            hashA[i] = 1 + random.nextInt((int) PRIME - 1);
+            hashB[i] = random.nextInt((int) PRIME);
+        }
+        for (int band = 0; band < bands; band++) {
+            buckets.add(new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Полностью перестраивает матрицу и подписи по переданным данным.
+     *
+     * @param likes Идентификаторы понравившихся фильмов по идентификатору пользователя.
+     */
+    public void rebuild(Map<Long, ? extends Collection<Long>> likes) {
+        lock.writeLock().lock();
+        try {
+            filmsByUser.clear();
+            usersByFilm.clear();
+            signatures.clear();
+            bucketKeys.clear();
+            buckets.forEach(Map::clear);
+            likes.forEach((user, filmIds) -> {
+                long[] films = filmIds.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+                if (films.length == 0) {
+                    return;
+                }
+                filmsByUser.put(user, films);
+                updateSignature(user, signatureOf(films));
+                for (long film : films) {
+                    usersByFilm.computeIfAbsent(film, id -> ConcurrentHashMap.newKeySet()).add(user);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет лайк пользователя фильму.
+     *
+     * @param userId Идентификатор пользователя.
+     * @param filmId Идентификатор фильма.
+     */
+    public void addLike(long userId, long filmId) {
+        update(() -> filmsByUser.compute(userId, (user, films) -> {
+            long[] current = films == null ? EMPTY : films;
+            long[] updated = insert(current, filmId);
+            if (updated != current) {
+                addToFilm(filmId, userId);
+                int[] signature = signatures.get(userId);
+                updateSignature(userId, signature == null ? signatureOf(updated) : withFilm(signature, filmId));
+            }
+            return updated;
+        }));
+    }
+
+    /**
+     * Удаляет лайк пользователя фильму.
+     *
+     * @param userId Идентификатор пользователя.
+     * @param filmId Идентификатор фильма.
+     */
+    public void removeLike(long userId, long filmId) {
+        update(() -> filmsByUser.computeIfPresent(userId, (user, films) -> {
+            long[] updated = remove(films, filmId);
+            if (updated != films) {
+                removeFromFilm(filmId, userId);
+                refreshSignature(userId, updated, filmId);
+            }
+            return updated.length == 0 ? null : updated;
+        }));
+    }
+
+    /**
+     * Удаляет все лайки пользователя.
+     *
+     * @param userId Идентификатор пользователя.
+     */
+    public void removeUser(long userId) {
+        update(() -> filmsByUser.computeIfPresent(userId, (user, films) -> {
+            for (long film : films) {
+                removeFromFilm(film, userId);
+            }
+            updateSignature(userId, null);
+            return null;
+        }));
+    }
+
+    /**
+     * Удаляет все лайки фильму.
+     *
+     * @param filmId Идентификатор фильма.
+     */
+    public void removeFilm(long filmId) {
+        update(() -> {
+            Set<Long> users = usersByFilm.remove(filmId);
+            if (users == null) {
+                return;
+            }
+            for (long userId : users) {
+                filmsByUser.computeIfPresent(userId, (user, films) -> {
+                    long[] updated = remove(films, filmId);
+                    if (updated != films) {
+                        refreshSignature(userId, updated, filmId);
+                    }
+                    return updated.length == 0 ? null : updated;
+                });
+            }
+        });
+    }
+
+    /**
+     * Возвращает рекомендованные фильмы для пользователя.
+     *
+     * @param userId Идентификатор пользователя.
+     * @return Идентификаторы фильмов без повторов, от наиболее к наименее рекомендуемому.
+     */
+    public List<Long> recommend(long userId) {
+        long[] liked = filmsByUser.getOrDefault(userId, EMPTY);
+        Map<Long, Double> scores = new HashMap<>();
+        for (Neighbour neighbour : findNeighbours(userId, liked, useExact(liked))) {
+            for (long film : filmsByUser.getOrDefault(neighbour.userId(), EMPTY)) {
+                if (Arrays.binarySearch(liked, film) < 0) {
+                    scores.merge(film, neighbour.similarity(), Double::sum);
+                }
+            }
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * Возвращает самых похожих на пользователя соседей.
+     *
+     * @param userId      Идентификатор пользователя.
+     * @param approximate Искать кандидатов по корзинам LSH, а не точным перебором.
+     * @return Идентификаторы соседей по убыванию сходства.
+     */
+    public List<Long> findNeighbours(long userId, boolean approximate) {
+        return findNeighbours(userId, filmsByUser.getOrDefault(userId, EMPTY), !approximate || bands == 0).stream()
+                .map(Neighbour::userId)
+                .toList();
+    }
+
+    private void update(Runnable change) {
+        lock.readLock().lock();
+        try {
+            change.run();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addToFilm(long film, long user) {
+        usersByFilm.compute(film, (id, users) -> {
+            Set<Long> result = users == null ? ConcurrentHashMap.newKeySet() : users;
+            result.add(user);
+            return result;
+        });
+    }
+
+    private void removeFromFilm(long film, long user) {
+        usersByFilm.computeIfPresent(film, (id, users) -> {
+            users.remove(user);
+            return users.isEmpty() ? null : users;
+        });
+    }
+
+    private boolean useExact(long[] liked) {
+        if (bands == 0) {
+            return true;
+        }
+        long postings = 0;
+        for (long film : liked) {
+            postings += usersByFilm.getOrDefault(film, Set.of()).size();
+        }
+        return postings <= exactThreshold;
+    }
+
+    private List<Neighbour> findNeighbours(long user, long[] liked, boolean exact) {
+        if (liked.length == 0) {
+            return List.of();
+        }
+        Map<Long, Integer> overlaps = new HashMap<>();
+        if (exact) {
+            for (long film : liked) {
+                for (long other : usersByFilm.getOrDefault(film, Set.of())) {
+                    if (other != user) {
+                        overlaps.merge(other, 1, Integer::sum);
+                    }
+                }
+            }
+        } else {
+            for (long other : findCandidates(user)) {
+                int overlap = intersectionSize(liked, filmsByUser.getOrDefault(other, EMPTY));
+                if (overlap > 0) {
+                    overlaps.put(other, overlap);
+                }
+            }
+        }
+        List<Neighbour> similar = new ArrayList<>(overlaps.size());
+        overlaps.forEach((other, overlap) -> {
+            int otherSize = filmsByUser.getOrDefault(other, EMPTY).length;
+            similar.add(new Neighbour(other, (double) overlap / (liked.length + otherSize - overlap)));
+        });
+        similar.sort(Comparator.comparingDouble(Neighbour::similarity).reversed()
+                .thenComparingLong(Neighbour::userId));
+        return similar.subList(0, Math.min(neighbours, similar.size()));
+    }
+
+    private Set<Long> findCandidates(long user) {
+        Set<Long> candidates = new HashSet<>();
+        long[] keys = bucketKeys.get(user);
+        if (keys == null) {
+            return candidates;
+        }
+        for (int band = 0; band < bands; band++) {
+            candidates.addAll(buckets.get(band).getOrDefault(keys[band], Set.of()));
+        }
+        candidates.remove(user);
+        return candidates;
+    }
+
+    private void refreshSignature(long user, long[] films, long removedFilm) {
+        int[] signature = signatures.get(user);
+        if (films.length == 0) {
+            updateSignature(user, null);
+        } else if (signature == null || contributes(signature, removedFilm)) {
+            updateSignature(user, signatureOf(films));
+        }
+    }
+
+    private void updateSignature(long user, int[] signature) {
+        if (bands == 0) {
+            return;
+        }
+        long[] oldKeys = bucketKeys.remove(user);
+        if (oldKeys != null) {
+            for (int band = 0; band < bands; band++) {
+                buckets.get(band).computeIfPresent(oldKeys[band], (key, bucket) -> {
+                    bucket.remove(user);
+                    return bucket.isEmpty() ? null : bucket;
+                });
+            }
+        }
+        if (signature == null) {
+            signatures.remove(user);
+            return;
+        }
+        long[] keys = new long[bands];
+        for (int band = 0; band < bands; band++) {
+            long key = band;
+            for (int row = 0; row < rows; row++) {
+                key = key * 31 + signature[band * rows + row];
+            }
+            keys[band] = key;
+            buckets.get(band).compute(key, (k, bucket) -> {
+                Set<Long> result = bucket == null ? ConcurrentHashMap.newKeySet() : bucket;
+                result.add(user);
+                return result;
+            });
+        }
+        signatures.put(user, signature);
+        bucketKeys.put(user, keys);
+    }
+
+    private int[] signatureOf(long[] films) {
+        int[] signature = new int[hashA.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (long film : films) {
+            for (int i = 0; i < signature.length; i++) {
+                signature[i] = Math.min(signature[i], hash(i, film));
+            }
+        }
+        return signature;
+    }
+
+    private int[] withFilm(int[] signature, long film) {
+        int[] result = signature.clone();
+        for (int i = 0; i < result.length; i++) {
+            result[i] = Math.min(result[i], hash(i, film));
+        }
+        return result;
+    }
+
+    private boolean contributes(int[] signature, long film) {
+        for (int i = 0; i < signature.length; i++) {
+            if (signature[i] == hash(i, film)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Значение хеш-функции {@code (a * x + b) mod p}. Идентификатор сначала приводится по модулю p,
+     * чтобы произведение не переполняло long при идентификаторах больше 2^31.
+     */
+    private int hash(int function, long value) {
+        return (int) ((hashA[function] * Math.floorMod(value, PRIME) + hashB[function]) % PRIME);
+    }
+
+    private static int intersectionSize(long[] first, long[] second) {
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] == second[j]) {
+                size++;
+                i++;
+                j++;
+            } else if (first[i] < second[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return size;
+    }
+
+    private static long[] insert(long[] values, long value) {
+        int position = Arrays.binarySearch(values, value);
+        if (position >= 0) {
+            return values;
+        }
+        position = -position - 1;
+        long[] result = new long[values.length + 1];
+        System.arraycopy(values, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(values, position, result, position + 1, values.length - position);
+        return result;
+    }
+
+    private static long[] remove(long[] values, long value) {
+        int position = Arrays.binarySearch(values, value);
+        if (position < 0) {
+            return values;
+        }
+        long[] result = new long[values.length - 1];
+        System.arraycopy(values, 0, result, 0, position);
+        System.arraycopy(values, position + 1, result, position, values.length - position - 1);
+        return result;
+    }
+
+    private record Neighbour(long userId, double similarity) {
+    }
+}
@@ -0,0 +1,206 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Индекс отзывов по полезности в памяти приложения.
+ * <p>
+ * Отзывы хранятся в конкурентных упорядоченных множествах с ключом (полезность по убыванию,
+ * идентификатор отзыва по возрастанию): общий индекс и отдельный индекс для каждого фильма.
+ * Индекс заполняется при старте из базы данных и обновляется при добавлении, изменении и удалении отзывов
+ * и при каждом голосе, поэтому выборка самых полезных отзывов не сортирует таблицу REVIEWS.
+ * </p>
+ * <p>
+ * Изменения одного отзыва выполняются под блокировкой его записи в {@link ConcurrentHashMap}: сначала
+ * добавляется новая позиция, затем удаляется старая, поэтому читатель может кратко увидеть отзыв дважды
+ * (повторы отбрасываются при выборке), но не пропустит его.
+ * </p>
+ */
+@Component
+public class ReviewIndex {
+
+    private static final Comparator<Rank> RANK_ORDER = Comparator.comparingLong(Rank::useful).reversed()
+            .thenComparingLong(Rank::reviewId);
+
+    private final ConcurrentSkipListSet<Rank> index = new ConcurrentSkipListSet<>(RANK_ORDER);
+    private final ConcurrentMap<Long, ConcurrentSkipListSet<Rank>> filmIndexes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, ReviewStats> reviews = new ConcurrentHashMap<>();
+
+    /**
+     * Полностью перестраивает индекс по переданным данным.
+     *
+     * @param stats Данные о всех отзывах.
+     */
+    public synchronized void rebuild(Collection<ReviewStats> stats) {
+        reviews.clear();
+        index.clear();
+        filmIndexes.clear();
+        for (ReviewStats reviewStats : stats) {
+            reviews.put(reviewStats.reviewId(), reviewStats);
+            index(reviewStats);
+        }
+    }
+
+    /**
+     * Добавляет отзыв в индекс или заменяет его данные.
+     *
+     * @param stats Данные отзыва.
+     */
+    public void putReview(ReviewStats stats) {
+        reviews.compute(stats.reviewId(), (id, old) -> {
+            index(stats);
+            if (old != null) {
+                unindex(old, stats);
+            }
+            return stats;
+        });
+    }
+
+    /**
+     * Изменяет фильм и автора отзыва, сохраняя его текущую полезность в индексе.
+     *
+     * @param reviewId Идентификатор отзыва.
+     * @param filmId   Идентификатор фильма.
+     * @param userId   Идентификатор автора.
+     */
+    public void moveReview(long reviewId, long filmId, long userId) {
+        reviews.computeIfPresent(reviewId, (id, old) -> {
+            ReviewStats updated = new ReviewStats(reviewId, filmId, userId, old.useful());
+            index(updated);
+            unindex(old, updated);
+            return updated;
+        });
+    }
+
+    /**
+     * Изменяет полезность отзыва.
+     *
+     * @param reviewId Идентификатор отзыва.
+     * @param delta    Изменение полезности.
+     */
+    public void addUseful(long reviewId, long delta) {
+        reviews.computeIfPresent(reviewId, (id, old) -> {
+            ReviewStats updated = new ReviewStats(reviewId, old.filmId(), old.userId(), old.useful() + delta);
+            index(updated);
+            unindex(old, updated);
+            return updated;
+        });
+    }
+
+    /**
+     * Удаляет отзыв из индекса.
+     *
+     * @param reviewId Идентификатор отзыва.
+     */
+    public void removeReview(long reviewId) {
+        reviews.computeIfPresent(reviewId, (id, old) -> {
+            unindex(old, null);
+            return null;
+        });
+    }
+
+    /**
+     * Удаляет из индекса все отзывы на фильм.
+     *
+     * @param filmId Идентификатор фильма.
+     */
+    public void removeFilm(long filmId) {
+        reviews.values().stream()
+                .filter(stats -> stats.filmId() == filmId)
+                .toList()
+                .forEach(stats -> removeReview(stats.reviewId()));
+    }
+
+    /**
+     * Удаляет из индекса все отзывы пользователя.
+     *
+     * @param userId Идентификатор пользователя.
+     */
+    public void removeUser(long userId) {
+        reviews.values().stream()
+                .filter(stats -> stats.userId() == userId)
+                .toList()
+                .forEach(stats -> removeReview(stats.reviewId()));
+    }
+
+    /**
+     * Возвращает идентификаторы самых полезных отзывов.
+     *
+     * @param filmId Идентификатор фильма, null - среди всех отзывов.
+     * @param count  Максимальное количество отзывов, null - без ограничения.
+     * @return Идентификаторы отзывов в порядке убывания полезности.
+     */
+    public List<Long> top(Long filmId, Integer count) {
+        Set<Rank> source = filmId == null ? index : filmIndexes.get(filmId);
+        if (source == null) {
+            return new ArrayList<>();
+        }
+        return collect(source, count == null ? Integer.MAX_VALUE : count);
+    }
+
+    /**
+     * Возвращает идентификаторы отзывов, следующих в порядке полезности за указанной позицией.
+     *
+     * @param filmId   Идентификатор фильма, null - среди всех отзывов.
+     * @param useful   Полезность последнего полученного отзыва.
+     * @param reviewId Идентификатор последнего полученного отзыва.
+     * @param limit    Максимальное количество отзывов.
+     * @return Идентификаторы отзывов в порядке убывания полезности.
+     */
+    public List<Long> after(Long filmId, long useful, long reviewId, int limit) {
+        NavigableSet<Rank> source = filmId == null ? index : filmIndexes.get(filmId);
+        if (source == null) {
+            return new ArrayList<>();
+        }
+        return collect(source.tailSet(new Rank(useful, reviewId), false), limit);
+    }
+
+    private static List<Long> collect(Set<Rank> source, int limit) {
+        Set<Long> result = new LinkedHashSet<>();
+        for (Rank rank : source) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(rank.reviewId());
+        }
+        return new ArrayList<>(result);
+    }
+
+    private void index(ReviewStats stats) {
+        Rank rank = new Rank(stats.useful(), stats.reviewId());
+        index.add(rank);
+        filmIndexes.computeIfAbsent(stats.filmId(), id -> new ConcurrentSkipListSet<>(RANK_ORDER)).add(rank);
+    }
+
+    private void unindex(ReviewStats old, ReviewStats updated) {
+        Rank rank = new Rank(old.useful(), old.reviewId());
+        if (updated == null || updated.useful() != old.useful()) {
+            index.remove(rank);
+        }
+        if (updated == null || updated.useful() != old.useful() || updated.filmId() != old.filmId()) {
+            Set<Rank> filmIndex = filmIndexes.get(old.filmId());
+            if (filmIndex != null) {
+                filmIndex.remove(rank);
+            }
+        }
+    }
+
+    /**
+     * Данные отзыва, необходимые для индекса.
+     *
+     * @param reviewId Идентификатор отзыва.
+     * @param filmId   Идентификатор фильма.
+     * @param userId   Идентификатор автора отзыва.
+     * @param useful   Полезность отзыва.
+     */
+    public record ReviewStats(long reviewId, long filmId, long userId, long useful) {
+    }
+
+    private record Rank(long useful, long reviewId) {
+    }
+}
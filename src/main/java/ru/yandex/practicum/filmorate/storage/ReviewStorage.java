@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.storage;
 
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.ReviewCursor;
 
 import java.util.List;
 
@@ -30,6 +31,16 @@ public interface ReviewStorage {
      */
     List<Review> getReviewsForFilm(Long filmId, Integer count);
 
+    /**
+     * Получает страницу отзывов, упорядоченных по полезности, следующих за позицией курсора.
+     *
+     * @param filmId идентификатор фильма, null - среди всех отзывов
+     * @param after  позиция последнего полученного отзыва, null - с начала списка
+     * @param limit  размер страницы
+     * @return страница отзывов
+     */
+    List<Review> getReviewsPage(Long filmId, ReviewCursor after, int limit);
+
     /**
      * Добавляет новый отзыв.
      *
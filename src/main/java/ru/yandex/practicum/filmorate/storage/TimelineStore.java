@@ -0,0 +1,250 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Event;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+
+/**
+ * Ленты событий друзей пользователей в памяти приложения.
+ * <p>
+ * Каждое новое событие автора рассылается в ленты его подписчиков - пользователей, добавивших автора
+ * в друзья по {@link FriendshipGraph}. Лента - кольцевой буфер из {@code filmorate.timeline.capacity}
+ * последних событий, упорядоченных по идентификатору, поэтому память на пользователя ограничена,
+ * а чтение страницы сводится к бинарному поиску и копированию не более limit событий.
+ * </p>
+ * <p>
+ * Для авторов, у которых больше {@code filmorate.timeline.fan-out-threshold} подписчиков, рассылка
+ * не выполняется: их события хранятся в собственном кольцевом буфере автора и подмешиваются в ленту
+ * при чтении. Так запись события популярного пользователя не требует обхода всех его подписчиков.
+ * Если число подписчиков автора опускается до порога, события из его буфера переносятся в ленты подписчиков.
+ * </p>
+ * <p>
+ * В ленту попадают события, совершенные после добавления автора в друзья. Исключение - перестроение
+ * лент при старте ({@link #rebuild(BiFunction)}): ленты собираются из последних событий текущих друзей,
+ * поэтому после перезапуска в них могут оказаться события, совершенные до начала дружбы.
+ * </p>
+ */
+@Component
+public class TimelineStore {
+
+    private final FriendshipGraph friendshipGraph;
+    private final int capacity;
+    private final int fanOutThreshold;
+    private final ConcurrentMap<Long, EventRing> timelines = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, EventRing> outboxes = new ConcurrentHashMap<>();
+    private final Set<Long> fanOutOnRead = ConcurrentHashMap.newKeySet();
+
+    public TimelineStore(FriendshipGraph friendshipGraph,
+                         @Value("${filmorate.timeline.capacity:1000}") int capacity,
+                         @Value("${filmorate.timeline.fan-out-threshold:1000}") int fanOutThreshold) {
+        this.friendshipGraph = friendshipGraph;
+        this.capacity = capacity;
+        this.fanOutThreshold = fanOutThreshold;
+    }
+
+    /**
+     * Удаляет все ленты.
+     */
+    public void clear() {
+        timelines.clear();
+        outboxes.clear();
+        fanOutOnRead.clear();
+    }
+
+    /**
+     * Перестраивает ленты по текущему графу дружбы.
+     * <p>
+     * Для каждого автора, у которого есть подписчики, загружается не больше {@code filmorate.timeline.capacity}
+     * его последних событий - этого достаточно, чтобы заполнить ленту любого подписчика. Поэтому время
+     * перестроения пропорционально числу таких авторов, а не размеру всей истории.
+     * </p>
+     *
+     * @param recentEvents Функция, возвращающая по идентификатору автора и количеству его последние события
+     *                     в порядке возрастания идентификатора.
+     */
+    public void rebuild(BiFunction<Long, Integer, List<Event>> recentEvents) {
+        clear();
+        Map<Long, List<Event>> eventsByAuthor = new HashMap<>();
+        for (long followerId : friendshipGraph.getUsersWithFriends()) {
+            List<Event> timeline = List.of();
+            for (long authorId : friendshipGraph.getFriendIds(followerId)) {
+                List<Event> events = eventsByAuthor.computeIfAbsent(authorId, id -> recentEvents.apply(id, capacity));
+                if (events.isEmpty()) {
+                    continue;
+                }
+                if (friendshipGraph.getFollowerCount(authorId) > fanOutThreshold) {
+                    if (fanOutOnRead.add(authorId)) {
+                        EventRing outbox = new EventRing(capacity);
+                        events.forEach(outbox::add);
+                        outboxes.put(authorId, outbox);
+                    }
+                } else {
+                    timeline = merge(timeline, events, capacity);
+                }
+            }
+            if (!timeline.isEmpty()) {
+                EventRing ring = new EventRing(capacity);
+                timeline.forEach(ring::add);
+                timelines.put(followerId, ring);
+            }
+        }
+    }
+
+    /**
+     * Добавляет событие в ленты подписчиков автора или, для автора с большим числом подписчиков,
+     * в буфер событий автора. События передаются одним потоком в порядке возрастания идентификатора -
+     * журналом событий после их записи в базу данных.
+     *
+     * @param event Событие с присвоенным идентификатором.
+     */
+    public void publish(Event event) {
+        long authorId = event.getUserId();
+        if (friendshipGraph.getFollowerCount(authorId) > fanOutThreshold) {
+            fanOutOnRead.add(authorId);
+            outboxes.computeIfAbsent(authorId, id -> new EventRing(capacity)).add(event);
+            return;
+        }
+        if (fanOutOnRead.contains(authorId)) {
+            EventRing outbox = outboxes.get(authorId);
+            if (outbox != null) {
+                outbox.page(Long.MAX_VALUE, capacity).forEach(this::fanOut);
+            }
+            fanOutOnRead.remove(authorId);
+            outboxes.remove(authorId);
+        }
+        fanOut(event);
+    }
+
+    /**
+     * Удаляет ленту пользователя и буфер его событий.
+     *
+     * @param userId Идентификатор пользователя.
+     */
+    public void removeUser(long userId) {
+        timelines.remove(userId);
+        outboxes.remove(userId);
+        fanOutOnRead.remove(userId);
+    }
+
+    /**
+     * Возвращает страницу ленты событий друзей пользователя.
+     *
+     * @param userId Идентификатор пользователя.
+     * @param before Идентификатор события, до которого выбирается страница (не включительно).
+     * @param limit  Максимальное количество событий.
+     * @return Не более limit последних событий до before в порядке возрастания идентификатора.
+     */
+    public List<Event> getPage(long userId, long before, int limit) {
+        List<Event> page = page(timelines.get(userId), before, limit);
+        long[] friendIds = friendshipGraph.getFriendIds(userId);
+        if (fanOutOnRead.size() < friendIds.length) {
+            for (long authorId : fanOutOnRead) {
+                if (friendshipGraph.isFriend(userId, authorId)) {
+                    page = merge(page, page(outboxes.get(authorId), before, limit), limit);
+                }
+            }
+        } else {
+            for (long authorId : friendIds) {
+                if (fanOutOnRead.contains(authorId)) {
+                    page = merge(page, page(outboxes.get(authorId), before, limit), limit);
+                }
+            }
+        }
+        return page;
+    }
+
+    private void fanOut(Event event) {
+        for (long followerId : friendshipGraph.getFollowers(event.getUserId())) {
+            timelines.computeIfAbsent(followerId, id -> new EventRing(capacity)).add(event);
+        }
+    }
+
+    private static List<Event> page(EventRing ring, long before, int limit) {
+        return ring == null ? List.of() : ring.page(before, limit);
+    }
+
+    private static List<Event> merge(List<Event> first, List<Event> second, int limit) {
+        List<Event> merged = new ArrayList<>(Math.min(first.size() + second.size(), limit));
+        int i = first.size() - 1;
+        int j = second.size() - 1;
+        while (merged.size() < limit && (i >= 0 || j >= 0)) {
+            Event event;
+            if (j < 0 || (i >= 0 && first.get(i).getEventId() >= second.get(j).getEventId())) {
+                event = first.get(i--);
+                if (j >= 0 && second.get(j).getEventId() == event.getEventId()) {
+                    j--;
+                }
+            } else {
+                event = second.get(j--);
+            }
+            merged.add(event);
+        }
+        return merged.reversed();
+    }
+
+    /**
+     * Кольцевой буфер последних событий, упорядоченных по идентификатору.
+     */
+    private static final class EventRing {
+
+        private final Event[] events;
+        private int start;
+        private int size;
+
+        private EventRing(int capacity) {
+            this.events = new Event[capacity];
+        }
+
+        synchronized void add(Event event) {
+            if (size == events.length) {
+                if (events[start].getEventId() > event.getEventId()) {
+                    return;
+                }
+                start = (start + 1) % events.length;
+                size--;
+            }
+            int position = size;
+            while (position > 0 && get(position - 1).getEventId() > event.getEventId()) {
+                set(position, get(position - 1));
+                position--;
+            }
+            set(position, event);
+            size++;
+        }
+
+        synchronized List<Event> page(long before, int limit) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (get(middle).getEventId() < before) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            List<Event> page = new ArrayList<>(Math.min(low, limit));
+            for (int i = Math.max(0, low - limit); i < low; i++) {
+                page.add(get(i));
+            }
+            return page;
+        }
+
+        private Event get(int index) {
+            return events[(start + index) % events.length];
+        }
+
+        private void set(int index, Event event) {
+            events[(start + index) % events.length] = event;
+        }
+    }
+}
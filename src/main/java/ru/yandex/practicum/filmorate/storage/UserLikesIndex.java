@@ -0,0 +1,157 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Лайки пользователей в памяти приложения.
+ * <p>
+ * Для каждого пользователя хранится отсортированный массив идентификаторов понравившихся фильмов.
+ * Память зависит только от числа лайков пользователя, а не от наибольшего идентификатора фильма,
+ * и идентификаторы могут занимать весь диапазон BIGINT. Пересечение лайков двух пользователей
+ * находится слиянием двух отсортированных массивов; если один массив намного меньше другого,
+ * его элементы ищутся в большем двоичным поиском.
+ * </p>
+ * <p>
+ * Индекс заполняется при старте из базы данных и обновляется при добавлении и удалении лайков,
+ * фильмов и пользователей. Массив не изменяется после публикации: изменение создает новый массив
+ * внутри {@link ConcurrentHashMap#compute} по идентификатору пользователя, поэтому чтение идет без блокировок.
+ * </p>
+ */
+@Component
+public class UserLikesIndex {
+
+    private static final long[] EMPTY = new long[0];
+
+    private final ConcurrentMap<Long, long[]> likesByUser = new ConcurrentHashMap<>();
+
+    /**
+     * Полностью перестраивает индекс по переданным данным.
+     *
+     * @param likes Идентификаторы понравившихся фильмов по идентификатору пользователя.
+     */
+    public synchronized void rebuild(Map<Long, ? extends Collection<Long>> likes) {
+        likesByUser.clear();
+        likes.forEach((userId, filmIds) -> {
+            long[] films = filmIds.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+            if (films.length > 0) {
+                likesByUser.put(userId, films);
+            }
+        });
+    }
+
+    /**
+     * Отмечает лайк пользователя фильму.
+     *
+     * @param userId Идентификатор пользователя.
+     * @param filmId Идентификатор фильма.
+     */
+    public void addLike(long userId, long filmId) {
+        likesByUser.compute(userId, (id, films) -> insert(films == null ? EMPTY : films, filmId));
+    }
+
+    /**
+     * Снимает лайк пользователя фильму.
+     *
+     * @param userId Идентификатор пользователя.
+     * @param filmId Идентификатор фильма.
+     */
+    public void removeLike(long userId, long filmId) {
+        likesByUser.computeIfPresent(userId, (id, films) -> remove(films, filmId));
+    }
+
+    /**
+     * Удаляет все лайки пользователя.
+     *
+     * @param userId Идентификатор пользователя.
+     */
+    public void removeUser(long userId) {
+        likesByUser.remove(userId);
+    }
+
+    /**
+     * Удаляет все лайки фильму.
+     *
+     * @param filmId Идентификатор фильма.
+     */
+    public void removeFilm(long filmId) {
+        for (Long userId : likesByUser.keySet()) {
+            likesByUser.computeIfPresent(userId, (id, films) -> remove(films, filmId));
+        }
+    }
+
+    /**
+     * Находит фильмы, которые понравились обоим пользователям.
+     *
+     * @param userId   Идентификатор первого пользователя.
+     * @param friendId Идентификатор второго пользователя.
+     * @return Идентификаторы общих фильмов по возрастанию.
+     */
+    public List<Long> findCommon(long userId, long friendId) {
+        long[] first = likesByUser.getOrDefault(userId, EMPTY);
+        long[] second = likesByUser.getOrDefault(friendId, EMPTY);
+        if (first.length > second.length) {
+            long[] swap = first;
+            first = second;
+            second = swap;
+        }
+        List<Long> common = new ArrayList<>();
+        if ((long) first.length * (64 - Long.numberOfLeadingZeros(second.length)) < second.length) {
+            for (long film : first) {
+                if (Arrays.binarySearch(second, film) >= 0) {
+                    common.add(film);
+                }
+            }
+            return common;
+        }
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] == second[j]) {
+                common.add(first[i]);
+                i++;
+                j++;
+            } else if (first[i] < second[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return common;
+    }
+
+    private static long[] insert(long[] values, long value) {
+        int position = Arrays.binarySearch(values, value);
+        if (position >= 0) {
+            return values;
+        }
+        position = -position - 1;
+        long[] result = new long[values.length + 1];
+        System.arraycopy(values, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(values, position, result, position + 1, values.length - position);
+        return result;
+    }
+
+    /**
+     * Удаляет значение из отсортированного массива.
+     *
+     * @return Новый массив или null, если массив стал пустым, чтобы запись пользователя удалилась из индекса.
+     */
+    private static long[] remove(long[] values, long value) {
+        int position = Arrays.binarySearch(values, value);
+        if (position < 0) {
+            return values;
+        }
+        if (values.length == 1) {
+            return null;
+        }
+        long[] result = new long[values.length - 1];
+        System.arraycopy(values, 0, result, 0, position);
+        System.arraycopy(values, position + 1, result, position, values.length - position - 1);
+        return result;
+    }
+}
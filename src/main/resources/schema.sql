@@ -11,6 +11,7 @@ DROP TABLE IF EXISTS GENRES CASCADE;
 DROP TABLE IF EXISTS MPA CASCADE;
 DROP TABLE IF EXISTS DIRECTORS CASCADE;
 DROP TABLE IF EXISTS USERS CASCADE;
+DROP TABLE IF EXISTS SCHEMA_GENERATION;
 
 
 -- PUBLIC.USERS определение
@@ -74,10 +75,13 @@ CREATE TABLE IF NOT EXISTS FILMS
     RELEASE_DATE DATE,
     DURATION     BIGINT,
     MPA_ID       INTEGER,
+    LIKE_COUNT   BIGINT                 NOT NULL DEFAULT 0,
     CONSTRAINT FILMS_PK PRIMARY KEY (FILM_ID),
     CONSTRAINT FILMS_MPA_FK FOREIGN KEY (MPA_ID) REFERENCES PUBLIC.MPA (MPA_ID)
 );
 
+CREATE INDEX IF NOT EXISTS FILMS_LIKE_COUNT_IDX ON FILMS (LIKE_COUNT DESC, FILM_ID);
+
 -- PUBLIC.FILMS_DIRECTORS определение
 
 CREATE TABLE IF NOT EXISTS FILMS_DIRECTORS (
@@ -88,6 +92,8 @@ CREATE TABLE IF NOT EXISTS FILMS_DIRECTORS (
 	ON DELETE CASCADE
 );
 
+CREATE INDEX IF NOT EXISTS FILMS_DIRECTORS_DIRECTOR_IDX ON FILMS_DIRECTORS (DIRECTOR_ID, FILM_ID);
+
 -- PUBLIC.FILMS_GENRES определение
 
 CREATE TABLE IF NOT EXISTS FILMS_GENRES
@@ -98,12 +104,15 @@ CREATE TABLE IF NOT EXISTS FILMS_GENRES
     CONSTRAINT FILMS_GENRES_GENRES_FK FOREIGN KEY (GENRE_ID) REFERENCES PUBLIC.GENRES (GENRE_ID)
 );
 
+CREATE INDEX IF NOT EXISTS FILMS_GENRES_GENRE_IDX ON FILMS_GENRES (GENRE_ID, FILM_ID);
+
 -- PUBLIC.LIKES определение
 
 CREATE TABLE IF NOT EXISTS LIKES
 (
     FILM_ID BIGINT,
     USER_ID BIGINT,
+    CONSTRAINT LIKES_PK PRIMARY KEY (FILM_ID, USER_ID),
     CONSTRAINT LIKES_FILMS_FK FOREIGN KEY (FILM_ID) REFERENCES PUBLIC.FILMS (FILM_ID),
     CONSTRAINT LIKES_USERS_FK FOREIGN KEY (USER_ID) REFERENCES PUBLIC.USERS (USER_ID)
 );
@@ -120,6 +129,9 @@ CREATE TABLE IF NOT EXISTS REVIEWS
     USEFUL      INTEGER
 );
 
+CREATE INDEX IF NOT EXISTS REVIEWS_FILM_USEFUL_IDX ON REVIEWS (FILM_ID, USEFUL DESC, REVIEW_ID);
+CREATE INDEX IF NOT EXISTS REVIEWS_USEFUL_IDX ON REVIEWS (USEFUL DESC, REVIEW_ID);
+
 -- PUBLIC.REVIEWS_USERS_LIKES определение
 
 CREATE TABLE IF NOT EXISTS REVIEWS_USERS_LIKES
@@ -140,3 +152,15 @@ CREATE TABLE IF NOT EXISTS HISTORY_ACTIONS (
 	ENTITY_ID BIGINT,
 	CONSTRAINT HISTORY_PK PRIMARY KEY (EVENT_ID)
 );
+
+CREATE INDEX IF NOT EXISTS HISTORY_ACTIONS_USER_EVENT_IDX ON HISTORY_ACTIONS (USER_ID, EVENT_ID);
+
+-- PUBLIC.SCHEMA_GENERATION определение
+-- новое значение при каждом пересоздании таблиц: по нему файловый журнал событий
+-- определяет, что его сегменты остались от удаленной истории
+
+CREATE TABLE IF NOT EXISTS SCHEMA_GENERATION (
+    GENERATION_ID UUID NOT NULL
+);
+
+INSERT INTO SCHEMA_GENERATION (GENERATION_ID) VALUES (RANDOM_UUID());
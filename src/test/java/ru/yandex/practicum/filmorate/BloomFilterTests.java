@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.BloomFilter;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BloomFilterTests - проверка отсутствия ложноотрицательных ответов и доли ложных срабатываний фильтра Блума.
+ */
+@Slf4j
+class BloomFilterTests {
+
+    private static final int IDS = 100_000;
+    private static final double RATE = 0.01;
+
+    @Test
+    public void falsePositiveRateTest() {
+        BloomFilter filter = new BloomFilter(IDS, RATE);
+        for (long id = 1; id <= IDS; id++) {
+            filter.put(id);
+        }
+        for (long id = 1; id <= IDS; id++) {
+            assertTrue(filter.mightContain(id));
+        }
+
+        int falsePositives = 0;
+        for (long id = IDS + 1; id <= 2L * IDS; id++) {
+            if (filter.mightContain(id)) {
+                falsePositives++;
+            }
+        }
+        double measured = (double) falsePositives / IDS;
+        log.info("Фильтр {} КБ, хеш-функций {}: ложных срабатываний {} ({}), оценка {}",
+                filter.getBitSize() / 8 / 1024, filter.getHashCount(), falsePositives, measured,
+                filter.estimateFalsePositiveRate());
+        assertTrue(measured < RATE * 1.5);
+        assertTrue(filter.estimateFalsePositiveRate() < RATE * 1.5);
+    }
+}
@@ -0,0 +1,205 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import ru.yandex.practicum.filmorate.dal.EventJournal;
+import ru.yandex.practicum.filmorate.dal.HistoryDbStorage;
+import ru.yandex.practicum.filmorate.dal.mappers.EventRowMapper;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.enums.EventTypes;
+import ru.yandex.practicum.filmorate.model.enums.OperationTypes;
+import ru.yandex.practicum.filmorate.storage.FriendshipGraph;
+import ru.yandex.practicum.filmorate.storage.TimelineStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * EventJournalTests - порядок записи событий журнала, повторная запись после ошибки и откладывание
+ * пакета, который не удалось записать.
+ */
+class EventJournalTests {
+
+    private static final int THREADS = 8;
+    private static final int EVENTS_PER_THREAD = 2_000;
+
+    private EmbeddedDatabase database;
+    private FailingHistoryStorage storage;
+    private EventJournal journal;
+    private final List<Long> notified = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    public void beforeEach() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("schema.sql")
+                .build();
+        storage = new FailingHistoryStorage(new JdbcTemplate(database));
+        journal = journal(100_000, 100, 5);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        journal.shutdown();
+        database.shutdown();
+    }
+
+    @Test
+    public void concurrentAppendsAreWrittenInIdOrderTest() throws InterruptedException {
+        ExecutorService writers = Executors.newFixedThreadPool(THREADS);
+        for (int thread = 0; thread < THREADS; thread++) {
+            writers.execute(() -> {
+                for (int i = 0; i < EVENTS_PER_THREAD; i++) {
+                    journal.append(event());
+                    if (i % 100 == 0) {
+                        journal.flush();
+                    }
+                }
+            });
+        }
+        writers.shutdown();
+        assertTrue(writers.awaitTermination(30, TimeUnit.SECONDS));
+        journal.flush();
+
+        assertEquals(THREADS * EVENTS_PER_THREAD, notified.size());
+        for (int i = 0; i < notified.size(); i++) {
+            assertEquals(i + 1, notified.get(i));
+        }
+        assertEquals(THREADS * EVENTS_PER_THREAD, storage.getEventsByUser(1).size());
+    }
+
+    @Test
+    public void failedBatchIsRetriedTest() {
+        journal.shutdown();
+        journal = journal(100_000, 200, 5);
+        for (int i = 0; i < 150; i++) {
+            journal.append(event());
+        }
+        storage.failures.set(1);
+        assertThrows(DataAccessResourceFailureException.class, journal::flush);
+        assertEquals(1, journal.getFailedFlushes());
+        assertEquals(150, journal.getQueueDepth());
+        assertTrue(notified.isEmpty());
+
+        journal.append(event());
+        journal.flush();
+
+        assertEquals(0, journal.getQueueDepth());
+        assertEquals(151, notified.size());
+        for (int i = 0; i < notified.size(); i++) {
+            assertEquals(i + 1, notified.get(i));
+        }
+        assertEquals(151, storage.getEventsByUser(1).size());
+    }
+
+    @Test
+    public void failingBatchIsParkedTest() {
+        journal.shutdown();
+        journal = journal(100_000, 100, 2);
+        for (int i = 0; i < 99; i++) {
+            journal.append(event());
+        }
+        storage.failures.set(2);
+        assertThrows(DataAccessResourceFailureException.class, journal::flush);
+        assertThrows(DataAccessResourceFailureException.class, journal::flush);
+        assertEquals(99, journal.getParkedEvents().size());
+        assertEquals(1, journal.getParkedEvents().getFirst().getEventId());
+        assertEquals(0, journal.getQueueDepth());
+
+        journal.append(event());
+        journal.flush();
+
+        assertEquals(0, journal.getQueueDepth());
+        assertEquals(List.of(100L), notified);
+    }
+
+    @Test
+    public void appendDoesNotFailWhenStorageIsDownTest() {
+        journal.shutdown();
+        journal = journal(10, 100, 1_000);
+        storage.failures.set(Integer.MAX_VALUE);
+        for (int i = 0; i < 30; i++) {
+            assertDoesNotThrow(() -> journal.append(event()));
+        }
+        assertEquals(30, journal.getQueueDepth());
+        assertTrue(journal.getOverflowedAppends() > 0);
+        assertTrue(notified.isEmpty());
+
+        storage.failures.set(0);
+        journal.shutdown();
+        assertEquals(30, notified.size());
+    }
+
+    @Test
+    public void timelineIsUpdatedAfterWriteTest() {
+        FriendshipGraph friendshipGraph = new FriendshipGraph();
+        friendshipGraph.addFriend(2, 1);
+        TimelineStore timelineStore = new TimelineStore(friendshipGraph, 100, 100);
+        journal.shutdown();
+        journal = journal(timelineStore, 100_000, 100, 5);
+
+        journal.append(event());
+        assertTrue(timelineStore.getPage(2, Long.MAX_VALUE, 10).isEmpty());
+        journal.flush();
+        assertEquals(1, timelineStore.getPage(2, Long.MAX_VALUE, 10).size());
+    }
+
+    private EventJournal journal(int capacity, int batchSize, int retryAttempts) {
+        return journal(new TimelineStore(new FriendshipGraph(), 100, 100), capacity, batchSize, retryAttempts);
+    }
+
+    private EventJournal journal(TimelineStore timelineStore, int capacity, int batchSize, int retryAttempts) {
+        EventJournal eventJournal = new EventJournal(storage, timelineStore,
+                capacity, batchSize, 60_000, 20, retryAttempts, 0);
+        eventJournal.addListener(events -> events.forEach(event -> notified.add(event.getEventId())));
+        return eventJournal;
+    }
+
+    private static Event event() {
+        return Event.builder()
+                .userId(1)
+                .timestamp(System.currentTimeMillis())
+                .eventType(EventTypes.LIKE)
+                .operation(OperationTypes.ADD)
+                .entityId(1)
+                .build();
+    }
+
+    /**
+     * Хранилище, которое заданное число раз записывает половину пакета и завершается ошибкой.
+     */
+    private static final class FailingHistoryStorage extends HistoryDbStorage {
+
+        private final AtomicInteger failures = new AtomicInteger();
+
+        private FailingHistoryStorage(JdbcTemplate jdbc) {
+            super(jdbc, new EventRowMapper(), false, null, 0);
+        }
+
+        @Override
+        public void addEvents(List<Event> events) {
+            if (failures.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+                super.addEvents(events.subList(0, events.size() / 2));
+                throw new DataAccessResourceFailureException("база данных недоступна");
+            }
+            super.addEvents(events);
+        }
+    }
+}
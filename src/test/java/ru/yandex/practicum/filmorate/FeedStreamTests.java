@@ -0,0 +1,280 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.controller.SseFeedBroadcaster;
+import ru.yandex.practicum.filmorate.dal.EventJournal;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.enums.EventTypes;
+import ru.yandex.practicum.filmorate.model.enums.OperationTypes;
+import ru.yandex.practicum.filmorate.service.FeedService;
+import ru.yandex.practicum.filmorate.service.UserDbService;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * FeedStreamTests - доставка событий ленты по server-sent events: отправка новых событий, продолжение
+ * с Last-Event-ID, закрытие подключения, которое не успевает принимать события, и подключения,
+ * запись в которое зависла.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:feed-stream",
+        "filmorate.feed-stream.queue-capacity=4",
+        "filmorate.event-journal.flush-interval-ms=10"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@Timeout(60)
+class FeedStreamTests {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .build();
+    private final List<SseConnection> connections = new ArrayList<>();
+
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private UserDbService userDbService;
+    @Autowired
+    private EventJournal eventJournal;
+    @Autowired
+    private SseFeedBroadcaster broadcaster;
+    @Autowired
+    private FeedService feedService;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 1; i <= 3; i++) {
+            userDbService.createUser(new User("user" + i + "@mail.ru", "user" + i, "user" + i, LocalDate.now()));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        connections.forEach(SseConnection::close);
+    }
+
+    @Test
+    void pushAndResumeTest() throws Exception {
+        SseConnection first = connect(1L, null);
+        userDbService.addFriend(1L, 2L);
+        JsonNode added = first.nextEvent();
+        assertEquals(1L, added.get("userId").asLong());
+        assertEquals("FRIEND", added.get("eventType").asText());
+        assertEquals("ADD", added.get("operation").asText());
+        assertEquals(2L, added.get("entityId").asLong());
+        first.close();
+
+        userDbService.addFriend(1L, 3L);
+        userDbService.deleteFriend(1L, 2L);
+        eventJournal.flush();
+
+        SseConnection resumed = connect(1L, added.get("eventId").asLong());
+        JsonNode missedAdd = resumed.nextEvent();
+        JsonNode missedRemove = resumed.nextEvent();
+        assertEquals(3L, missedAdd.get("entityId").asLong());
+        assertEquals("REMOVE", missedRemove.get("operation").asText());
+        assertEquals(added.get("eventId").asLong() + 1, missedAdd.get("eventId").asLong());
+        assertEquals(missedAdd.get("eventId").asLong() + 1, missedRemove.get("eventId").asLong());
+
+        userDbService.addFriend(2L, 1L);
+        userDbService.addFriend(1L, 2L);
+        JsonNode live = resumed.nextEvent();
+        assertEquals(missedRemove.get("eventId").asLong() + 2, live.get("eventId").asLong());
+        assertEquals(2L, live.get("entityId").asLong());
+    }
+
+    @Test
+    void slowClientIsDisconnectedTest() throws Exception {
+        SseConnection connection = connect(1L, null);
+        for (int i = 0; i < 100; i++) {
+            eventJournal.append(event(1L));
+        }
+        eventJournal.flush();
+
+        awaitTrue(() -> broadcaster.getConnectionCount() == 0);
+        int received = 0;
+        while (connection.nextEventOrEnd() != null) {
+            received++;
+        }
+        assertTrue(received < 100);
+    }
+
+    @Test
+    void stalledSendDoesNotBlockOtherConnectionsTest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingQueue<Boolean> delivered = new LinkedBlockingQueue<>();
+        SseFeedBroadcaster stalling = new SseFeedBroadcaster(feedService, 60_000, 100, 1, 200) {
+            private int created;
+
+            @Override
+            protected SseEmitter createEmitter(long timeout) {
+                boolean blocking = created++ == 0;
+                return new SseEmitter(timeout) {
+                    private int sends;
+
+                    @Override
+                    public void send(SseEventBuilder builder) {
+                        if (sends++ == 0) {
+                            return;
+                        }
+                        if (!blocking) {
+                            delivered.add(true);
+                            return;
+                        }
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                };
+            }
+        };
+        stalling.init();
+        try {
+            stalling.subscribe(1L, null);
+            stalling.subscribe(2L, null);
+            eventJournal.append(event(1L));
+            eventJournal.append(event(2L));
+            eventJournal.flush();
+
+            assertNotNull(delivered.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            awaitTrue(() -> stalling.getConnectionCount() == 1);
+        } finally {
+            release.countDown();
+            stalling.shutdown();
+        }
+    }
+
+    private SseConnection connect(long userId, Long lastEventId) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(
+                        URI.create("http://localhost:" + port + "/users/" + userId + "/feed/stream"))
+                .header("Accept", "text/event-stream");
+        if (lastEventId != null) {
+            request.header("Last-Event-ID", String.valueOf(lastEventId));
+        }
+        HttpResponse<InputStream> response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        assertEquals(200, response.statusCode());
+        SseConnection connection = new SseConnection(response.body());
+        connections.add(connection);
+        return connection;
+    }
+
+    private static Event event(long userId) {
+        return Event.builder()
+                .userId(userId)
+                .timestamp(System.currentTimeMillis())
+                .eventType(EventTypes.LIKE)
+                .operation(OperationTypes.ADD)
+                .entityId(1)
+                .build();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Условие не выполнено за " + TIMEOUT_SECONDS + " с");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Клиент потока server-sent events. Строки читаются отдельным потоком, чтобы ожидание события
+     * было ограничено по времени.
+     */
+    private final class SseConnection {
+
+        private final InputStream body;
+        private final BlockingQueue<Optional<String>> lines = new LinkedBlockingQueue<>();
+
+        private SseConnection(InputStream body) {
+            this.body = body;
+            Thread thread = new Thread(() -> {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        lines.add(Optional.of(line));
+                    }
+                } catch (IOException ignored) {
+                    // Подключение закрыто.
+                }
+                lines.add(Optional.empty());
+            }, "feed-stream-test-reader");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        JsonNode nextEvent() throws IOException, InterruptedException {
+            JsonNode event = nextEventOrEnd();
+            assertTrue(event != null, "Поток событий завершился");
+            return event;
+        }
+
+        JsonNode nextEventOrEnd() throws IOException, InterruptedException {
+            String id = null;
+            String data = null;
+            while (true) {
+                Optional<String> next = lines.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                assertTrue(next != null, "Событие не получено за " + TIMEOUT_SECONDS + " с");
+                if (next.isEmpty()) {
+                    lines.add(next);
+                    assertNull(data);
+                    return null;
+                }
+                String line = next.get();
+                if (line.startsWith("id:")) {
+                    id = line.substring(3);
+                } else if (line.startsWith("data:")) {
+                    data = line.substring(5);
+                } else if (line.isEmpty() && data != null) {
+                    JsonNode event = objectMapper.readTree(data);
+                    assertEquals(event.get("eventId").asText(), id);
+                    return event;
+                }
+            }
+        }
+
+        void close() {
+            try {
+                body.close();
+            } catch (IOException ignored) {
+                // Подключение уже закрыто сервером.
+            }
+        }
+    }
+}
@@ -7,16 +7,32 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
 import ru.yandex.practicum.filmorate.dal.*;
 import ru.yandex.practicum.filmorate.dal.mappers.*;
+import ru.yandex.practicum.filmorate.exceptions.NotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Event;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmBatchResult;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.*;
+import ru.yandex.practicum.filmorate.storage.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.FriendshipGraph;
+import ru.yandex.practicum.filmorate.storage.PopularityLeaderboard;
+import ru.yandex.practicum.filmorate.storage.RecommendationEngine;
+import ru.yandex.practicum.filmorate.storage.ReviewIndex;
+import ru.yandex.practicum.filmorate.storage.TimelineStore;
+import ru.yandex.practicum.filmorate.storage.UserLikesIndex;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -34,21 +50,36 @@ import static org.junit.jupiter.api.Assertions.*;
         MpaFieldsDbValidator.class, MpaRowMapper.class, FieldsValidatorService.class,
         FilmFieldsDbValidatorService.class, UserFieldsDbValidatorService.class,
         HistoryDbStorage.class, EventRowMapper.class, DirectorDbService.class, DirectorDbStorage.class,
-        DirectorRowMapper.class, DirectorDbValidatorService.class})
+        DirectorRowMapper.class, DirectorDbValidatorService.class, ReferenceDataService.class,
+        PopularityLeaderboard.class, FilmSearchIndex.class, UserLikesIndex.class,
+        RecommendationEngine.class, FriendshipGraph.class, FeedService.class,
+        EventJournal.class, TimelineStore.class, ReviewIndex.class, FilmBatchService.class,
+        IdRegistry.class, GenreFieldsDbValidator.class})
+@TestPropertySource(properties = "filmorate.film-batch.chunk-size=2")
 class FilmorateApplicationTests {
 
     private final UserDbService userDbService;
     private final FilmDbService filmDbService;
     private final GenreDbService genreDbService;
     private final MpaDbService mpaDbService;
+    private final DirectorDbService directorDbService;
+    private final FeedService feedService;
+    private final FilmBatchService filmBatchService;
+    private final IdRegistry idRegistry;
 
     @Autowired
     public FilmorateApplicationTests(UserDbService userDbService, FilmDbService filmDbService,
-                                     GenreDbService genreDbService, MpaDbService mpaDbService) {
+                                     GenreDbService genreDbService, MpaDbService mpaDbService,
+                                     DirectorDbService directorDbService, FeedService feedService,
+                                     FilmBatchService filmBatchService, IdRegistry idRegistry) {
         this.userDbService = userDbService;
         this.filmDbService = filmDbService;
         this.genreDbService = genreDbService;
         this.mpaDbService = mpaDbService;
+        this.directorDbService = directorDbService;
+        this.feedService = feedService;
+        this.filmBatchService = filmBatchService;
+        this.idRegistry = idRegistry;
     }
 
     public void addTestFilm() {
@@ -106,6 +137,35 @@ class FilmorateApplicationTests {
         assertTrue(film.getLikes().isEmpty());
     }
 
+    @Test
+    @DirtiesContext
+    void idRegistryTest() {
+        long userMisses = idRegistry.getMisses(IdRegistry.Table.USERS);
+        long filmMisses = idRegistry.getMisses(IdRegistry.Table.FILMS);
+        filmDbService.addLike(1L, 1L);
+        filmDbService.deleteLike(1L, 1L);
+        assertEquals(userMisses, idRegistry.getMisses(IdRegistry.Table.USERS));
+        assertEquals(filmMisses, idRegistry.getMisses(IdRegistry.Table.FILMS));
+        assertThrows(NotFoundException.class, () -> filmDbService.addLike(1L, 999L));
+        assertThrows(NotFoundException.class, () -> filmDbService.addLike(999L, 1L));
+        assertEquals(userMisses, idRegistry.getMisses(IdRegistry.Table.USERS));
+        assertEquals(filmMisses, idRegistry.getMisses(IdRegistry.Table.FILMS));
+        assertTrue(idRegistry.getFilterBytes(IdRegistry.Table.USERS) > 0);
+
+        Director director = new Director();
+        director.setName("Гай Ричи");
+        long directorId = directorDbService.create(director).getId();
+        assertTrue(idRegistry.exists(IdRegistry.Table.DIRECTORS, directorId));
+        directorDbService.deleteDirector(directorId);
+        assertFalse(idRegistry.exists(IdRegistry.Table.DIRECTORS, directorId));
+        idRegistry.register(IdRegistry.Table.FILMS, 1L << 32);
+        assertTrue(idRegistry.exists(IdRegistry.Table.FILMS, 1L << 32));
+        idRegistry.register(IdRegistry.Table.DIRECTORS, 1L << 32);
+        assertTrue(idRegistry.exists(IdRegistry.Table.DIRECTORS, 1L << 32));
+        idRegistry.unregister(IdRegistry.Table.DIRECTORS, 1L << 32);
+        assertFalse(idRegistry.exists(IdRegistry.Table.DIRECTORS, 1L << 32));
+    }
+
     @Test
     @DirtiesContext
     void getPopularTest() {
@@ -114,6 +174,69 @@ class FilmorateApplicationTests {
         assertEquals(1, popular.size());
     }
 
+    @Test
+    @DirtiesContext
+    void popularFilmsLeaderboardTest() {
+        addTestFilm();
+        filmDbService.addLike(2L, 1L);
+        filmDbService.addLike(2L, 1L);
+        assertEquals(List.of(2L, 1L), filmDbService.getPopularFilms(null, null, null).stream()
+                .map(Film::getId).toList());
+        assertEquals(1, filmDbService.getPopularFilms(1, 1, 2019).size());
+        assertTrue(filmDbService.getPopularFilms(10, 2, null).isEmpty());
+        assertTrue(filmDbService.checkPopularityLeaderboard(false).isEmpty());
+
+        filmDbService.deleteLike(2L, 1L);
+        assertEquals(List.of(1L, 2L), filmDbService.getPopularFilms(null, null, null).stream()
+                .map(Film::getId).toList());
+        filmDbService.deleteFilm(2L);
+        assertEquals(1, filmDbService.getPopularFilms(null, null, 2019).size());
+        assertTrue(filmDbService.checkPopularityLeaderboard(false).isEmpty());
+    }
+
+    @Test
+    @DirtiesContext
+    void getCommonFilmsTest() {
+        addTestFilm();
+        addTestFilm();
+        userDbService.createUser(new User("newemail@email.ru", "login2", "testName", LocalDate.now()));
+        userDbService.createUser(new User("neweremail@email.ru", "login3", "testName", LocalDate.now()));
+        for (long filmId = 1; filmId <= 3; filmId++) {
+            filmDbService.addLike(filmId, 1L);
+        }
+        filmDbService.addLike(2L, 2L);
+        filmDbService.addLike(3L, 2L);
+        filmDbService.addLike(3L, 3L);
+
+        assertEquals(List.of(3L, 2L), filmDbService.getCommonFilms(1L, 2L).stream().map(Film::getId).toList());
+        filmDbService.deleteLike(3L, 2L);
+        assertEquals(List.of(2L), filmDbService.getCommonFilms(1L, 2L).stream().map(Film::getId).toList());
+        filmDbService.deleteFilm(2L);
+        assertTrue(filmDbService.getCommonFilms(1L, 2L).isEmpty());
+    }
+
+    @Test
+    @DirtiesContext
+    void getRecommendationsTest() {
+        addTestFilm();
+        addTestFilm();
+        userDbService.createUser(new User("newemail@email.ru", "login2", "testName", LocalDate.now()));
+        userDbService.createUser(new User("neweremail@email.ru", "login3", "testName", LocalDate.now()));
+        filmDbService.addLike(1L, 1L);
+        filmDbService.addLike(1L, 2L);
+        filmDbService.addLike(2L, 2L);
+        filmDbService.addLike(1L, 3L);
+        filmDbService.addLike(2L, 3L);
+        filmDbService.addLike(3L, 3L);
+
+        assertEquals(List.of(2L, 3L), filmDbService.getRecommendations(1L).stream().map(Film::getId).toList());
+        userDbService.deleteUser(2L);
+        assertEquals(List.of(2L, 3L), filmDbService.getRecommendations(1L).stream().map(Film::getId).toList());
+        filmDbService.deleteFilm(2L);
+        assertEquals(List.of(3L), filmDbService.getRecommendations(1L).stream().map(Film::getId).toList());
+        assertTrue(filmDbService.getRecommendations(3L).isEmpty());
+    }
+
     @Test
     @DirtiesContext
     void getAllFilmsTest() {
@@ -121,6 +244,113 @@ class FilmorateApplicationTests {
         assertEquals(1, films.size());
     }
 
+    @Test
+    @DirtiesContext
+    void getAllFilmsHydratesRelatedDataTest() {
+        addTestFilm();
+        filmDbService.addLike(2L, 1L);
+        List<Film> films = filmDbService.getAll().stream().toList();
+        assertEquals(2, films.size());
+        for (Film film : films) {
+            assertEquals("G", film.getMpa().getName());
+            assertEquals(1, film.getGenres().size());
+            assertEquals("Комедия", film.getGenres().iterator().next().getName());
+            assertNotNull(film.getDirectors());
+        }
+        assertTrue(films.get(0).getLikes().isEmpty());
+        assertTrue(films.get(1).getLikes().contains(1L));
+    }
+
+    @Test
+    @DirtiesContext
+    void addFilmsBatchTest() {
+        Director director = new Director();
+        director.setName("Режиссер");
+        long directorId = directorDbService.create(director).getId();
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Film film = new Film();
+            film.setName("Фильм " + i);
+            film.setReleaseDate(LocalDate.of(2000 + i, 1, 1));
+            film.setDuration(100L);
+            Mpa mpa = new Mpa();
+            mpa.setId(i == 1 ? 99 : 1);
+            film.setMpa(mpa);
+            Genre genre = new Genre();
+            genre.setId(i == 3 ? 77 : 2);
+            film.setGenres(Set.of(genre));
+            Director filmDirector = new Director();
+            filmDirector.setId(directorId);
+            film.setDirectors(Set.of(filmDirector));
+            films.add(film);
+        }
+        Film nullGenre = new Film();
+        nullGenre.setName("Фильм без жанра");
+        nullGenre.setReleaseDate(LocalDate.of(2010, 1, 1));
+        nullGenre.setDuration(100L);
+        nullGenre.setMpa(films.get(0).getMpa());
+        nullGenre.setGenres(new HashSet<>(Collections.singleton(null)));
+        films.add(nullGenre);
+        Film nullDirector = new Film();
+        nullDirector.setName("Фильм без режиссера");
+        nullDirector.setReleaseDate(LocalDate.of(2011, 1, 1));
+        nullDirector.setDuration(100L);
+        nullDirector.setMpa(films.get(0).getMpa());
+        nullDirector.setDirectors(new HashSet<>(Collections.singleton(null)));
+        films.add(nullDirector);
+
+        FilmBatchResult result = filmBatchService.addFilms(films.iterator());
+
+        assertEquals(3, result.getAdded());
+        assertEquals(List.of(2L, 3L, 4L), result.getIds());
+        assertEquals(List.of(1, 3, 5, 6), result.getErrors().stream().map(FilmBatchResult.ItemError::index).toList());
+        assertEquals("Жанр не может быть Null", result.getErrors().get(2).message());
+        assertEquals("Режиссер не может быть Null", result.getErrors().get(3).message());
+        Film added = filmDbService.getFilmById(4L);
+        assertEquals("Фильм 4", added.getName());
+        assertEquals(List.of(2), added.getGenres().stream().map(Genre::getId).toList());
+        assertEquals(List.of(directorId), added.getDirectors().stream().map(Director::getId).toList());
+        assertEquals(4, filmDbService.getAll().size());
+    }
+
+    @Test
+    @DirtiesContext
+    void failedBatchChunkIsReportedTest() {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Film film = new Film();
+            film.setName(i == 2 ? "Ф".repeat(41) : "Фильм " + i);
+            film.setReleaseDate(LocalDate.of(2000 + i, 1, 1));
+            film.setDuration(100L);
+            Mpa mpa = new Mpa();
+            mpa.setId(1);
+            film.setMpa(mpa);
+            films.add(film);
+        }
+
+        FilmBatchResult result = filmBatchService.addFilms(films.iterator());
+
+        assertEquals(3, result.getAdded());
+        assertEquals(List.of(2, 3), result.getErrors().stream().map(FilmBatchResult.ItemError::index).toList());
+        assertEquals(List.of("Фильм 0", "Фильм 1", "Фильм 4"), result.getIds().stream()
+                .map(id -> filmDbService.getFilmById(id).getName())
+                .toList());
+    }
+
+    @Test
+    @DirtiesContext
+    void getFilmsPageTest() {
+        addTestFilm();
+        addTestFilm();
+        List<Film> firstPage = filmDbService.getPage(null, 2);
+        assertEquals(List.of(1L, 2L), firstPage.stream().map(Film::getId).toList());
+        List<Film> secondPage = filmDbService.getPage(2L, 2);
+        assertEquals(List.of(3L), secondPage.stream().map(Film::getId).toList());
+        List<Long> streamed = new ArrayList<>();
+        filmDbService.forEachFilm(film -> streamed.add(film.getId()));
+        assertEquals(List.of(1L, 2L, 3L), streamed);
+    }
+
     @Test
     @DirtiesContext
     void updateFilmTest() {
@@ -146,6 +376,154 @@ class FilmorateApplicationTests {
         assertEquals("Джентльмены2", film.getName());
     }
 
+    @Test
+    @DirtiesContext
+    void directorCacheTest() {
+        Director director = new Director();
+        director.setName("Гай Ричи");
+        long id = directorDbService.create(director).getId();
+        assertEquals("Гай Ричи", directorDbService.findDirectorNameById(id));
+        long misses = directorDbService.getCacheMisses();
+        long hits = directorDbService.getCacheHits();
+        assertEquals("Гай Ричи", directorDbService.findDirectorNameById(id));
+        assertEquals(misses, directorDbService.getCacheMisses());
+        assertEquals(hits + 1, directorDbService.getCacheHits());
+
+        director.setName("Гай Стюарт Ричи");
+        directorDbService.update(director);
+        assertEquals("Гай Стюарт Ричи", directorDbService.findDirectorNameById(id));
+        assertEquals(misses + 1, directorDbService.getCacheMisses());
+    }
+
+    @Test
+    @DirtiesContext
+    void searchFilmsTest() {
+        Director director = new Director();
+        director.setName("Дженкинс");
+        directorDbService.create(director);
+        Film film = new Film();
+        film.setName("Большой куш");
+        film.setMpa(mpaDbService.findById(1));
+        film.setDirectors(Set.of(director));
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(104L);
+        filmDbService.addFilm(film);
+
+        assertEquals(List.of(2L, 1L), filmDbService.searchFilms("ДЖЕН", "title,director").stream()
+                .map(Film::getId).toList());
+        assertEquals(List.of(1L), filmDbService.searchFilms("джен", "title").stream()
+                .map(Film::getId).toList());
+        assertEquals(List.of(2L), filmDbService.searchFilms("джен", "director").stream()
+                .map(Film::getId).toList());
+        assertEquals(List.of(2L), filmDbService.searchFilms("ш", "title").stream()
+                .map(Film::getId).toList());
+
+        director.setName("Гай Ричи");
+        directorDbService.update(director);
+        assertTrue(filmDbService.searchFilms("джен", "director").isEmpty());
+        assertEquals(1, filmDbService.searchFilms("ричи", "director").size());
+        directorDbService.deleteDirector(director.getId());
+        assertTrue(filmDbService.searchFilms("ричи", "director").isEmpty());
+    }
+
+    @Test
+    @DirtiesContext
+    void getDirectorFilmsTest() {
+        Director first = new Director();
+        first.setName("Гай Ричи");
+        directorDbService.create(first);
+        Director second = new Director();
+        second.setName("Мэттью Вон");
+        directorDbService.create(second);
+        for (int year : new int[]{2005, 2000}) {
+            Film film = new Film();
+            film.setName("Фильм " + year);
+            film.setMpa(mpaDbService.findById(1));
+            film.setDirectors(new LinkedHashSet<>(List.of(first, second)));
+            film.setReleaseDate(LocalDate.of(year, 1, 1));
+            film.setDuration(100L);
+            filmDbService.addFilm(film);
+        }
+        filmDbService.addLike(2L, 1L);
+
+        assertEquals(List.of(3L, 2L), filmDbService.getDirectorFilms(second.getId(), "year").stream()
+                .map(Film::getId).toList());
+        assertEquals(List.of(2L, 3L), filmDbService.getDirectorFilms(second.getId(), "likes").stream()
+                .map(Film::getId).toList());
+        assertThrows(IllegalArgumentException.class, () -> filmDbService.getDirectorFilms(first.getId(), "name"));
+    }
+
+    @Test
+    @DirtiesContext
+    void getFeedPageTest() {
+        for (int i = 0; i < 5; i++) {
+            filmDbService.addLike(1L, 1L);
+            filmDbService.deleteLike(1L, 1L);
+        }
+        List<Long> all = feedService.getFeed(1L).stream().map(Event::getEventId).toList();
+        assertEquals(10, all.size());
+
+        List<Long> last = feedService.getFeedPage(1L, null, 4).stream().map(Event::getEventId).toList();
+        assertEquals(all.subList(6, 10), last);
+        List<Long> previous = feedService.getFeedPage(1L, last.getFirst(), 4).stream()
+                .map(Event::getEventId).toList();
+        assertEquals(all.subList(2, 6), previous);
+        assertThrows(ValidationException.class, () -> feedService.getFeedPage(1L, 0L, 4));
+        assertThrows(NotFoundException.class, () -> feedService.getFeedPage(99L, null, 4));
+    }
+
+    @Test
+    @DirtiesContext
+    void getTimelineTest() {
+        userDbService.createUser(new User("newemail@email.ru", "login2", "testName", LocalDate.now()));
+        userDbService.createUser(new User("neweremail@email.ru", "login3", "testName", LocalDate.now()));
+        userDbService.addFriend(2L, 1L);
+        filmDbService.addLike(1L, 1L);
+        userDbService.addFriend(1L, 3L);
+
+        List<Event> timeline = feedService.getTimeline(2L, null, null);
+        assertEquals(2, timeline.size());
+        assertEquals(List.of(1L, 1L), timeline.stream().map(Event::getUserId).toList());
+        assertEquals(timeline.getLast().getEventId(), feedService.getFeed(1L).getLast().getEventId());
+        assertEquals(timeline.subList(0, 1), feedService.getTimeline(2L, timeline.getLast().getEventId(), 5));
+        assertTrue(feedService.getTimeline(3L, null, null).isEmpty());
+        assertThrows(NotFoundException.class, () -> feedService.getTimeline(99L, null, null));
+
+        FriendshipGraph graph = new FriendshipGraph();
+        TimelineStore store = new TimelineStore(graph, 2, 1);
+        graph.addFriend(1L, 2L);
+        graph.addFriend(1L, 3L);
+        graph.addFriend(4L, 3L);
+        for (long id = 1; id <= 4; id++) {
+            store.publish(Event.builder().eventId(id).userId(id % 2 == 0 ? 2L : 3L).build());
+        }
+        assertEquals(List.of(2L, 3L, 4L), store.getPage(1L, Long.MAX_VALUE, 3).stream().map(Event::getEventId).toList());
+        assertEquals(List.of(1L, 3L), store.getPage(4L, Long.MAX_VALUE, 5).stream().map(Event::getEventId).toList());
+        assertEquals(List.of(1L, 2L), store.getPage(1L, 3L, 5).stream().map(Event::getEventId).toList());
+
+        graph = new FriendshipGraph();
+        store = new TimelineStore(graph, 10, 1);
+        graph.addFriend(1L, 3L);
+        graph.addFriend(4L, 3L);
+        List<Event> events = new ArrayList<>();
+        for (long id = 1; id <= 3; id++) {
+            events.add(Event.builder().eventId(id).userId(3L).build());
+        }
+        store.publish(events.get(0));
+        store.publish(events.get(1));
+        graph.removeFriend(4L, 3L);
+        store.publish(events.get(2));
+        assertEquals(List.of(1L, 2L, 3L),
+                store.getPage(1L, Long.MAX_VALUE, 5).stream().map(Event::getEventId).toList());
+        assertTrue(store.getPage(4L, Long.MAX_VALUE, 5).isEmpty());
+
+        store.rebuild((authorId, limit) -> authorId == 3L
+                ? events.subList(Math.max(0, events.size() - limit), events.size())
+                : List.of());
+        assertEquals(List.of(1L, 2L, 3L),
+                store.getPage(1L, Long.MAX_VALUE, 5).stream().map(Event::getEventId).toList());
+    }
+
     @Test
     @DirtiesContext
     void findUserByIdTest() {
@@ -210,8 +588,13 @@ class FilmorateApplicationTests {
         User friend = new User("newemail@email.ru", "login2", "testName", LocalDate.now());
         userDbService.createUser(friend);
         userDbService.addFriend(user.getId(), 2L);
+        userDbService.addFriend(2L, user.getId());
         List<User> friends = userDbService.getUserFriends(user.getId());
         assertEquals(1, friends.size());
+        assertEquals(Set.of(1L), friends.getFirst().getFriends());
+        List<User> users = userDbService.getAll();
+        assertEquals(Set.of(2L), users.get(0).getFriends());
+        assertEquals(Set.of(1L), users.get(1).getFriends());
     }
 
     @Test
@@ -229,6 +612,11 @@ class FilmorateApplicationTests {
         userDbService.addFriend(2L, 1L);
         List<User> commonFriends = userDbService.getCommonFriends(user.getId(), 2L);
         assertEquals(1, commonFriends.size());
+        assertEquals(3L, commonFriends.getFirst().getId());
+
+        userDbService.deleteUser(3L);
+        assertTrue(userDbService.getCommonFriends(user.getId(), 2L).isEmpty());
+        assertEquals(List.of(2L), userDbService.getUserFriends(user.getId()).stream().map(User::getId).toList());
     }
 
     @Test
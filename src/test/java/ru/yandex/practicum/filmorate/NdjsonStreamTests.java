@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.yandex.practicum.filmorate.controller.NdjsonWriter;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * NdjsonStreamTests - потоковые выгрузки отвечают с типом содержимого application/x-ndjson.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:ndjson-stream")
+@AutoConfigureMockMvc
+class NdjsonStreamTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        jdbc.update("INSERT INTO USERS (EMAIL, LOGIN, USER_NAME, BIRTHDAY) "
+                + "VALUES ('user@mail.ru', 'user', 'user', CURRENT_DATE)");
+        jdbc.update("INSERT INTO FILMS (FILM_NAME, RELEASE_DATE, DURATION, MPA_ID) "
+                + "VALUES ('Film', CURRENT_DATE, 100, 1)");
+    }
+
+    @Test
+    void streamsHaveNdjsonContentTypeTest() throws Exception {
+        for (String path : List.of("/films/stream", "/users/stream", "/users/1/feed/stream")) {
+            MvcResult started = mockMvc.perform(get(path))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            String body = mockMvc.perform(asyncDispatch(started))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(NdjsonWriter.APPLICATION_NDJSON))
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString();
+            assertEquals(path.endsWith("feed/stream") ? 0 : 1, body.lines().count(), path);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.RecommendationEngine;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * RecommendationEngineTests - сравнение приближенного поиска похожих пользователей (MinHash/LSH) с точным.
+ */
+@Slf4j
+class RecommendationEngineTests {
+
+    private static final int USERS = 5000;
+    private static final int CLUSTERS = 50;
+    private static final int FILMS_PER_CLUSTER = 40;
+    private static final int SAMPLE = 200;
+
+    private final Map<Long, List<Long>> likes = new HashMap<>();
+
+    @BeforeEach
+    public void beforeEach() {
+        Random random = new Random(7);
+        for (long user = 1; user <= USERS; user++) {
+            int cluster = random.nextInt(CLUSTERS);
+            Set<Long> films = new HashSet<>();
+            while (films.size() < 20) {
+                films.add((long) cluster * FILMS_PER_CLUSTER + random.nextInt(FILMS_PER_CLUSTER) + 1);
+            }
+            for (int i = 0; i < 3; i++) {
+                films.add((long) random.nextInt(CLUSTERS * FILMS_PER_CLUSTER) + 1);
+            }
+            likes.put(user, new ArrayList<>(films));
+        }
+    }
+
+    @Test
+    public void lshNeighboursRecallTest() {
+        RecommendationEngine engine = new RecommendationEngine(20, 32, 2, 0);
+        engine.rebuild(likes);
+
+        double recall = 0;
+        long exactNanos = 0;
+        long approximateNanos = 0;
+        for (long user = 1; user <= SAMPLE; user++) {
+            long start = System.nanoTime();
+            List<Long> exact = engine.findNeighbours(user, false);
+            exactNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            List<Long> approximate = engine.findNeighbours(user, true);
+            approximateNanos += System.nanoTime() - start;
+
+            Set<Long> found = new HashSet<>(approximate);
+            found.retainAll(exact);
+            recall += (double) found.size() / exact.size();
+        }
+        recall /= SAMPLE;
+        log.info("LSH recall: {}, exact: {} us/user, LSH: {} us/user", recall,
+                exactNanos / SAMPLE / 1000, approximateNanos / SAMPLE / 1000);
+        assertTrue(recall > 0.9);
+    }
+
+    @Test
+    public void exactAndLshRecommendationsMatchForSmallDataTest() {
+        RecommendationEngine exact = new RecommendationEngine(20, 0, 0, 0);
+        RecommendationEngine approximate = new RecommendationEngine(20, 32, 2, 0);
+        Map<Long, List<Long>> small = Map.of(1L, List.of(1L), 2L, List.of(1L, 2L), 3L, List.of(3L));
+        exact.rebuild(small);
+        approximate.rebuild(small);
+        assertEquals(List.of(2L), exact.recommend(1L));
+        assertEquals(exact.recommend(1L), approximate.recommend(1L));
+
+        approximate.addLike(3L, 1L);
+        approximate.removeLike(2L, 2L);
+        approximate.removeLike(2L, 1L);
+        assertEquals(List.of(3L), approximate.recommend(1L));
+    }
+
+    @Test
+    public void largeIdsTest() {
+        long base = 3_000_000_000L;
+        Map<Long, List<Long>> small = Map.of(base + 1, List.of(base + 1), base + 2, List.of(base + 1, base + 2));
+        RecommendationEngine exact = new RecommendationEngine(20, 0, 0, 0);
+        RecommendationEngine approximate = new RecommendationEngine(20, 32, 2, 0);
+        exact.rebuild(small);
+        approximate.rebuild(small);
+        assertEquals(List.of(base + 2), exact.recommend(base + 1));
+        assertEquals(List.of(base + 2), approximate.recommend(base + 1));
+
+        approximate.addLike(base + 3, Long.MAX_VALUE);
+        approximate.addLike(base + 3, base + 1);
+        approximate.removeFilm(base + 2);
+        assertEquals(List.of(Long.MAX_VALUE), approximate.recommend(base + 1));
+    }
+
+    @Test
+    public void concurrentLikesMatchRebuildTest() throws Exception {
+        RecommendationEngine concurrent = new RecommendationEngine(20, 32, 2, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        likes.forEach((user, films) -> futures.add(executor.submit(() -> {
+            films.forEach(film -> concurrent.addLike(user, film));
+            concurrent.addLike(user, 0L);
+            concurrent.removeLike(user, 0L);
+        })));
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        RecommendationEngine rebuilt = new RecommendationEngine(20, 32, 2, 0);
+        rebuilt.rebuild(likes);
+        for (long user = 1; user <= SAMPLE; user++) {
+            assertEquals(rebuilt.recommend(user), concurrent.recommend(user));
+        }
+    }
+}
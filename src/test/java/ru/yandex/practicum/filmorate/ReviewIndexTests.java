@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import ru.yandex.practicum.filmorate.storage.ReviewIndex;
+import ru.yandex.practicum.filmorate.storage.ReviewIndex.ReviewStats;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * ReviewIndexTests - сравнение выборки самых полезных отзывов из индекса с сортировкой в H2.
+ * Замер на миллионе отзывов помечен тегом benchmark и запускается профилем: {@code mvn test -Pbenchmark}.
+ */
+@Slf4j
+class ReviewIndexTests {
+
+    private static final int COUNT = 10;
+
+    private static final String FILL_QUERY = """
+            INSERT INTO REVIEWS (REVIEW_ID, CONTENT, IS_POSITIVE, USER_ID, FILM_ID, USEFUL)
+            SELECT X, 'Отзыв', TRUE, MOD(X, 5000) + 1, MOD(X * 7, ?) + 1, MOD(X * 31, 401) - 200
+            FROM SYSTEM_RANGE(1, ?)""";
+    private static final String TOP_FOR_FILM_QUERY = """
+            SELECT REVIEW_ID FROM REVIEWS WHERE FILM_ID = ? ORDER BY USEFUL DESC, REVIEW_ID LIMIT ?""";
+    private static final String TOP_QUERY = "SELECT REVIEW_ID FROM REVIEWS ORDER BY USEFUL DESC, REVIEW_ID LIMIT ?";
+
+    @Test
+    public void indexMatchesSqlOrderingTest() {
+        compareWithSql(20_000, 100);
+    }
+
+    @Test
+    @Tag("benchmark")
+    public void indexMatchesSqlOrderingBenchmark() {
+        compareWithSql(1_000_000, 1_000);
+    }
+
+    private static void compareWithSql(int reviews, int films) {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("schema.sql")
+                .build();
+        try {
+            JdbcTemplate jdbc = new JdbcTemplate(database);
+            jdbc.execute("SET REFERENTIAL_INTEGRITY FALSE");
+            jdbc.update(FILL_QUERY, films, reviews);
+
+            ReviewIndex reviewIndex = new ReviewIndex();
+            long start = System.nanoTime();
+            reviewIndex.rebuild(jdbc.query("SELECT REVIEW_ID, FILM_ID, USER_ID, USEFUL FROM REVIEWS",
+                    (rs, rowNum) -> new ReviewStats(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4))));
+            long rebuildNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            List<List<Long>> sqlPages = new ArrayList<>();
+            for (long filmId = 1; filmId <= films; filmId++) {
+                sqlPages.add(jdbc.queryForList(TOP_FOR_FILM_QUERY, Long.class, filmId, COUNT));
+            }
+            sqlPages.add(jdbc.queryForList(TOP_QUERY, Long.class, COUNT));
+            long sqlNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            List<List<Long>> indexPages = new ArrayList<>();
+            for (long filmId = 1; filmId <= films; filmId++) {
+                indexPages.add(reviewIndex.top(filmId, COUNT));
+            }
+            indexPages.add(reviewIndex.top(null, COUNT));
+            long indexNanos = System.nanoTime() - start;
+
+            log.info("Отзывов: {}, построение индекса {} мс; {} выборок: SQL {} мс, индекс {} мс",
+                    reviews, rebuildNanos / 1_000_000, films + 1, sqlNanos / 1_000_000, indexNanos / 1_000_000);
+            assertEquals(sqlPages, indexPages);
+
+            reviewIndex.addUseful(1, 1_000);
+            reviewIndex.removeReview(sqlPages.getLast().getFirst());
+            assertEquals(1L, reviewIndex.top(null, 1).getFirst());
+            reviewIndex.moveReview(1, 9, 1);
+            assertEquals(1L, reviewIndex.top(9L, 1).getFirst());
+            assertEquals(1L, reviewIndex.top(null, 1).getFirst());
+            reviewIndex.removeFilm(8);
+            assertEquals(List.of(), reviewIndex.top(8L, COUNT));
+        } finally {
+            database.shutdown();
+        }
+    }
+}
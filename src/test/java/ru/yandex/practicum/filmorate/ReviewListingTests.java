@@ -0,0 +1,124 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.yandex.practicum.filmorate.controller.NdjsonWriter;
+import ru.yandex.practicum.filmorate.dal.ReviewDbStorage;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.ReviewCursor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * ReviewListingTests - выборка отзывов: постраничная по курсору и потоковая в формате NDJSON.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:review-listing")
+@AutoConfigureMockMvc
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class ReviewListingTests {
+
+    private static final int USERS = 7;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private ReviewDbStorage reviewDbStorage;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 1; i <= USERS; i++) {
+            jdbc.update("INSERT INTO USERS (EMAIL, LOGIN, USER_NAME, BIRTHDAY) VALUES (?, ?, ?, CURRENT_DATE)",
+                    "user" + i + "@mail.ru", "user" + i, "user" + i);
+        }
+        jdbc.update("INSERT INTO FILMS (FILM_NAME, RELEASE_DATE, DURATION, MPA_ID) VALUES ('Film', CURRENT_DATE, 100, 1)");
+        for (long userId = 1; userId <= USERS; userId++) {
+            long id = reviewDbStorage.addReview(Review.builder()
+                    .content("Отзыв " + userId)
+                    .isPositive(true)
+                    .userId(userId)
+                    .filmId(1L)
+                    .build()).getReviewId();
+            for (long voter = 1; voter <= userId % 3; voter++) {
+                reviewDbStorage.addLikeInReview(id, voter);
+            }
+        }
+    }
+
+    @Test
+    void reviewsPageTest() {
+        List<Review> all = reviewDbStorage.getReviewsForFilm(1L, null);
+        List<Review> paged = new ArrayList<>();
+        ReviewCursor after = null;
+        List<Review> page;
+        do {
+            page = reviewDbStorage.getReviewsPage(1L, after, 2);
+            paged.addAll(page);
+            if (!page.isEmpty()) {
+                after = ReviewCursor.decode(ReviewCursor.of(page.getLast()).encode());
+            }
+        } while (page.size() == 2);
+
+        assertEquals(USERS, paged.size());
+        assertEquals(all.stream().map(Review::getReviewId).toList(), paged.stream().map(Review::getReviewId).toList());
+        assertEquals(paged, reviewDbStorage.getReviewsPage(null, null, 10));
+        assertEquals(List.of(), reviewDbStorage.getReviewsPage(2L, null, 10));
+    }
+
+    @Test
+    void allReviewsIgnoreCountTest() {
+        assertEquals(USERS, reviewDbStorage.getReviewsForFilm(null, 2).size());
+        assertEquals(2, reviewDbStorage.getReviewsForFilm(1L, 2).size());
+    }
+
+    @Test
+    void malformedCursorTest() throws Exception {
+        for (String cursor : List.of("!!", "MTp4", "MToyOjM")) {
+            mockMvc.perform(get("/reviews").param("filmId", "1").param("cursor", cursor))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.error").exists());
+        }
+    }
+
+    @Test
+    void streamReviewsTest() throws Exception {
+        List<Long> expected = reviewDbStorage.getReviewsForFilm(1L, null).stream()
+                .map(Review::getReviewId)
+                .toList();
+        MvcResult started = mockMvc.perform(get("/reviews/stream").param("filmId", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(NdjsonWriter.APPLICATION_NDJSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        List<Long> streamed = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            streamed.add(objectMapper.readTree(line).get("reviewId").asLong());
+        }
+        assertEquals(expected, streamed);
+    }
+}
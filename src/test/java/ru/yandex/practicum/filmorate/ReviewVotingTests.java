@@ -0,0 +1,175 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dal.EventJournal;
+import ru.yandex.practicum.filmorate.dal.HistoryDbStorage;
+import ru.yandex.practicum.filmorate.dal.ReviewDbStorage;
+import ru.yandex.practicum.filmorate.dal.ReviewUsefulCounters;
+import ru.yandex.practicum.filmorate.dal.mappers.EventRowMapper;
+import ru.yandex.practicum.filmorate.dal.mappers.ReviewRowMapper;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.storage.FriendshipGraph;
+import ru.yandex.practicum.filmorate.storage.ReviewIndex;
+import ru.yandex.practicum.filmorate.storage.TimelineStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * ReviewVotingTests - проверка точности рейтинга полезности отзыва при одновременном голосовании.
+ */
+@Slf4j
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ContextConfiguration(classes = {ReviewDbStorage.class, ReviewUsefulCounters.class, ReviewRowMapper.class,
+        EventJournal.class, HistoryDbStorage.class, EventRowMapper.class, TimelineStore.class, FriendshipGraph.class,
+        ReviewIndex.class})
+class ReviewVotingTests {
+
+    private static final int USERS = 20;
+    private static final int THREADS = 8;
+    private static final int VOTES_PER_THREAD = 500;
+
+    private static final String USEFUL_QUERY = "SELECT USEFUL FROM REVIEWS WHERE REVIEW_ID = ?";
+    private static final String VOTES_SUM_QUERY = """
+            SELECT COALESCE(SUM(CASE WHEN like_or_dislike = 'like' THEN 1 ELSE -1 END), 0)
+            FROM reviews_users_likes
+            WHERE review_id = ?""";
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private ReviewDbStorage reviewDbStorage;
+    @Autowired
+    private ReviewUsefulCounters usefulCounters;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private long reviewId;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 1; i <= USERS; i++) {
+            jdbc.update("INSERT INTO USERS (EMAIL, LOGIN, USER_NAME, BIRTHDAY) VALUES (?, ?, ?, CURRENT_DATE)",
+                    "user" + i + "@mail.ru", "user" + i, "user" + i);
+        }
+        jdbc.update("INSERT INTO FILMS (FILM_NAME, RELEASE_DATE, DURATION, MPA_ID) VALUES ('Film', CURRENT_DATE, 100, 1)");
+        Review review = Review.builder()
+                .content("Отзыв")
+                .isPositive(true)
+                .userId(1L)
+                .filmId(1L)
+                .build();
+        reviewId = reviewDbStorage.addReview(review).getReviewId();
+    }
+
+    @Test
+    @DirtiesContext
+    void votesAreIdempotentTest() {
+        reviewDbStorage.addLikeInReview(reviewId, 1L);
+        reviewDbStorage.addLikeInReview(reviewId, 1L);
+        assertEquals(1, useful());
+        reviewDbStorage.addDislikeInReview(reviewId, 1L);
+        reviewDbStorage.addDislikeInReview(reviewId, 1L);
+        assertEquals(-1, useful());
+        reviewDbStorage.deleteLikeInReview(reviewId, 1L);
+        assertEquals(-1, useful());
+        reviewDbStorage.deleteDislikeInReview(reviewId, 1L);
+        reviewDbStorage.deleteDislikeInReview(reviewId, 1L);
+        assertEquals(0, useful());
+    }
+
+    @Test
+    @DirtiesContext
+    void usefulStaysExactUnderContentionTest() throws Exception {
+        AtomicInteger failures = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            Random random = new Random(t);
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < VOTES_PER_THREAD; i++) {
+                    long userId = random.nextInt(USERS) + 1;
+                    try {
+                        switch (random.nextInt(4)) {
+                            case 0 -> reviewDbStorage.addLikeInReview(reviewId, userId);
+                            case 1 -> reviewDbStorage.addDislikeInReview(reviewId, userId);
+                            case 2 -> reviewDbStorage.deleteLikeInReview(reviewId, userId);
+                            default -> reviewDbStorage.deleteDislikeInReview(reviewId, userId);
+                        }
+                    } catch (RuntimeException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        long elapsed = System.nanoTime() - start;
+        int votes = THREADS * VOTES_PER_THREAD;
+        log.info("Голосов: {}, ошибок: {}, {} голосов/с", votes, failures.get(),
+                votes * 1_000_000_000L / elapsed);
+
+        int votesSum = jdbc.queryForObject(VOTES_SUM_QUERY, Integer.class, reviewId);
+        assertEquals(0, failures.get());
+        assertEquals(votesSum, useful());
+        usefulCounters.flush();
+        assertEquals(0, usefulCounters.getPendingCount());
+        assertEquals(votesSum, jdbc.queryForObject(USEFUL_QUERY, Integer.class, reviewId));
+        assertEquals(votesSum, useful());
+    }
+
+    @Test
+    @DirtiesContext
+    void rolledBackVoteDoesNotChangeUsefulTest() {
+        reviewDbStorage.addLikeInReview(reviewId, 1L);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            reviewDbStorage.addDislikeInReview(reviewId, 2L);
+            reviewDbStorage.addDislikeInReview(reviewId, 3L);
+            status.setRollbackOnly();
+        });
+        assertEquals(1, useful());
+        assertEquals(1, reviewDbStorage.getReviewsForFilm(1L, 1).getFirst().getUseful());
+        usefulCounters.flush();
+        assertEquals(1, jdbc.queryForObject(USEFUL_QUERY, Integer.class, reviewId));
+    }
+
+    @Test
+    @DirtiesContext
+    void usefulIsRecountedOnStartupTest() {
+        reviewDbStorage.addLikeInReview(reviewId, 1L);
+        reviewDbStorage.addLikeInReview(reviewId, 2L);
+        reviewDbStorage.addDislikeInReview(reviewId, 3L);
+        usefulCounters.flush();
+        jdbc.update("UPDATE REVIEWS SET USEFUL = 0 WHERE REVIEW_ID = ?", reviewId);
+        reviewDbStorage.initReviewIndex();
+        assertEquals(1, jdbc.queryForObject(USEFUL_QUERY, Integer.class, reviewId));
+    }
+
+    private int useful() {
+        return reviewDbStorage.getReview(reviewId).getUseful();
+    }
+}
@@ -0,0 +1,161 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import ru.yandex.practicum.filmorate.dal.HistoryDbStorage;
+import ru.yandex.practicum.filmorate.dal.SegmentedEventLog;
+import ru.yandex.practicum.filmorate.dal.mappers.EventRowMapper;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.enums.EventTypes;
+import ru.yandex.practicum.filmorate.model.enums.OperationTypes;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * SegmentedEventLogTests - восстановление файлового журнала событий и сравнение его с хранением в H2.
+ */
+@Slf4j
+class SegmentedEventLogTests {
+
+    private static final int USERS = 500;
+    private static final int EVENTS = 20_000;
+    private static final int BATCH = 100;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void eventLogMatchesJdbcStorageTest() {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("schema.sql")
+                .build();
+        try {
+            JdbcTemplate jdbc = new JdbcTemplate(database);
+            HistoryDbStorage jdbcStorage = new HistoryDbStorage(jdbc, new EventRowMapper(), false, null, 0);
+            HistoryDbStorage logStorage = new HistoryDbStorage(jdbc, null, true, directory.toString(), 10_000);
+            List<Event> events = events(1, EVENTS);
+
+            long jdbcWriteNanos = write(jdbcStorage, events);
+            long logWriteNanos = write(logStorage, events);
+            long start = System.nanoTime();
+            List<List<Event>> jdbcPages = readPages(jdbcStorage);
+            long jdbcReadNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            List<List<Event>> logPages = readPages(logStorage);
+            long logReadNanos = System.nanoTime() - start;
+            log.info("Запись {} событий: JDBC {} мс, журнал {} мс; чтение страниц: JDBC {} мс, журнал {} мс",
+                    EVENTS, jdbcWriteNanos / 1_000_000, logWriteNanos / 1_000_000,
+                    jdbcReadNanos / 1_000_000, logReadNanos / 1_000_000);
+
+            assertEquals(jdbcPages, logPages);
+            assertEquals(jdbcStorage.getEventsByUser(7L), logStorage.getEventsByUser(7L));
+            assertEquals(jdbcStorage.getMaxEventId(), logStorage.getMaxEventId());
+            logStorage.close();
+        } finally {
+            database.shutdown();
+        }
+    }
+
+    @Test
+    public void recoverAfterTornWriteTest() throws IOException {
+        SegmentedEventLog eventLog = new SegmentedEventLog(directory, 100);
+        eventLog.append(events(1, 250));
+        eventLog.close();
+
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.sorted().toList();
+        }
+        assertEquals(3, segments.size());
+        try (RandomAccessFile file = new RandomAccessFile(segments.getLast().toFile(), "rw")) {
+            long lastRecord = 16 + 49L * 34;
+            file.seek(lastRecord + 20);
+            file.write(7);
+        }
+
+        SegmentedEventLog recovered = new SegmentedEventLog(directory, 100);
+        assertEquals(249, recovered.getMaxEventId());
+        List<Event> all = new ArrayList<>();
+        recovered.forEachEvent(all::add);
+        assertEquals(events(1, 249), all);
+
+        recovered.append(events(250, 260));
+        recovered.close();
+        SegmentedEventLog reopened = new SegmentedEventLog(directory, 100);
+        assertEquals(260, reopened.getMaxEventId());
+        assertEquals(events(1, 260).stream().filter(event -> event.getUserId() == 3).toList(),
+                reopened.getEventsByUser(3));
+        assertEquals(List.of(events(250, 260).get(2)), reopened.getEventsPage(252, 261, 1));
+        reopened.close();
+    }
+
+    @Test
+    public void newDatabaseGenerationResetsLogTest() throws IOException {
+        SegmentedEventLog eventLog = new SegmentedEventLog(directory, 100, "first");
+        eventLog.append(events(1, 150));
+        eventLog.close();
+
+        SegmentedEventLog sameGeneration = new SegmentedEventLog(directory, 100, "first");
+        assertEquals(150, sameGeneration.getMaxEventId());
+        sameGeneration.close();
+
+        SegmentedEventLog newGeneration = new SegmentedEventLog(directory, 100, "second");
+        assertEquals(0, newGeneration.getMaxEventId());
+        assertEquals(List.of(), newGeneration.getEventsByUser(3));
+        newGeneration.append(events(1, 10));
+        newGeneration.close();
+
+        SegmentedEventLog reopened = new SegmentedEventLog(directory, 100, "second");
+        assertEquals(events(1, 10).stream().filter(event -> event.getUserId() == 3).toList(),
+                reopened.getEventsByUser(3));
+        reopened.close();
+    }
+
+    private static List<Event> events(long from, long to) {
+        List<Event> events = new ArrayList<>();
+        long timestamp = 1_700_000_000_000L;
+        for (long id = from; id <= to; id++) {
+            events.add(Event.builder()
+                    .eventId(id)
+                    .userId(id % USERS)
+                    .timestamp(timestamp + id * 1_000)
+                    .eventType(EventTypes.values()[(int) (id % EventTypes.values().length)])
+                    .operation(OperationTypes.values()[(int) (id % OperationTypes.values().length)])
+                    .entityId(id * 7)
+                    .build());
+        }
+        return events;
+    }
+
+    private static long write(HistoryDbStorage storage, List<Event> events) {
+        long start = System.nanoTime();
+        for (int i = 0; i < events.size(); i += BATCH) {
+            storage.addEvents(events.subList(i, Math.min(events.size(), i + BATCH)));
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static List<List<Event>> readPages(HistoryDbStorage storage) {
+        List<List<Event>> pages = new ArrayList<>();
+        for (long user = 0; user < USERS; user++) {
+            pages.add(storage.getEventsPage(user, Long.MAX_VALUE, 20));
+            pages.add(storage.getEventsPage(user, EVENTS / 2, 20));
+        }
+        return pages;
+    }
+}
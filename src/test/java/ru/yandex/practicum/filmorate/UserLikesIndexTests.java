@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.UserLikesIndex;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * UserLikesIndexTests - пересечение лайков пользователей, в том числе с идентификаторами больше 2^31.
+ */
+class UserLikesIndexTests {
+
+    @Test
+    void commonLikesWithLargeIdsTest() {
+        long base = 3_000_000_000L;
+        UserLikesIndex index = new UserLikesIndex();
+        index.rebuild(Map.of(1L, List.of(base + 3, 1L, base + 1), 2L, List.of(base + 1, Long.MAX_VALUE, 1L)));
+        assertEquals(List.of(1L, base + 1), index.findCommon(1L, 2L));
+
+        index.addLike(1L, Long.MAX_VALUE);
+        index.removeLike(2L, 1L);
+        assertEquals(List.of(base + 1, Long.MAX_VALUE), index.findCommon(2L, 1L));
+
+        index.removeFilm(base + 1);
+        index.removeLike(2L, Long.MAX_VALUE);
+        assertEquals(List.of(), index.findCommon(1L, 2L));
+        assertEquals(List.of(), index.findCommon(1L, 3L));
+    }
+
+    @Test
+    void commonLikesOfSmallAndLargeListsTest() {
+        UserLikesIndex index = new UserLikesIndex();
+        index.rebuild(Map.of(1L, LongStream.rangeClosed(1, 10_000).boxed().toList(), 2L, List.of(0L, 5L, 9_999L)));
+        assertEquals(List.of(5L, 9_999L), index.findCommon(1L, 2L));
+        assertEquals(List.of(5L, 9_999L), index.findCommon(2L, 1L));
+    }
+}